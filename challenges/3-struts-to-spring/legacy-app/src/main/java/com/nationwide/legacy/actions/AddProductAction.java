@@ -42,6 +42,10 @@ public class AddProductAction extends Action {
             Product savedProduct = dao.addProduct(product);
 
             String format = request.getParameter("format");
+            if ("binary".equals(format)) {
+                BinaryResponses.writeProduct(savedProduct, response);
+                return null;
+            }
             if ("json".equals(format)) {
                 String json = JsonHelper.productToJson(savedProduct);
                 request.setAttribute("jsonResponse", json);
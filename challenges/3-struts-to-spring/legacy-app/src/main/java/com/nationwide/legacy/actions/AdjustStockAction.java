@@ -0,0 +1,62 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.dao.InsufficientStockException;
+import com.nationwide.legacy.dao.ProductDAO;
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.util.JsonHelper;
+import org.apache.struts.action.Action;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Atomically increment or decrement stock (id + delta, or items=id:delta,...)
+ *
+ * A negative delta only succeeds if enough stock is available; a
+ * multi-line request is applied completely or not at all.
+ */
+public class AdjustStockAction extends Action {
+
+    @Override
+    public ActionForward execute(ActionMapping mapping, ActionForm form,
+                                  HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+
+        try {
+            Map<Integer, Integer> deltas = StockLines.parse(request, "delta");
+
+            ProductDAO dao = ProductDAO.getInstance();
+            List<Product> products = dao.adjustStock(deltas);
+
+            if (products == null) {
+                request.setAttribute("errorMessage", "Product not found: " + deltas.keySet());
+                return mapping.findForward("error");
+            }
+
+            String format = request.getParameter("format");
+            if ("binary".equals(format)) {
+                BinaryResponses.writeProducts(products, response);
+                return null;
+            }
+            if ("json".equals(format)) {
+                String json = JsonHelper.productsToJson(products);
+                request.setAttribute("jsonResponse", json);
+                return mapping.findForward("json");
+            }
+
+            return mapping.findForward("success");
+
+        } catch (NumberFormatException e) {
+            request.setAttribute("errorMessage", "Invalid number format: " + e.getMessage());
+            return mapping.findForward("error");
+        } catch (IllegalArgumentException | InsufficientStockException e) {
+            request.setAttribute("errorMessage", e.getMessage());
+            return mapping.findForward("error");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.admission.AdmissionController;
+import com.nationwide.legacy.util.JsonHelper;
+import org.apache.struts.action.Action;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Report admission limits and admitted/queued/shed counters per action
+ * path (always JSON)
+ */
+public class AdmissionStatusAction extends Action {
+
+    @Override
+    public ActionForward execute(ActionMapping mapping, ActionForm form,
+                                  HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+
+        String json = JsonHelper.mapToJson(AdmissionController.getInstance().getStatus());
+        request.setAttribute("jsonResponse", json);
+        return mapping.findForward("json");
+    }
+}
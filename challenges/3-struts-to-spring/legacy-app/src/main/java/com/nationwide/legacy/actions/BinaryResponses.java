@@ -0,0 +1,52 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.dao.ProductBuffer;
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.ProductView;
+import com.nationwide.legacy.util.BinaryHelper;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes format=binary responses with the BinaryHelper codec
+ */
+final class BinaryResponses {
+
+    private BinaryResponses() {
+    }
+
+    static void writeProduct(Product product, HttpServletResponse response) throws IOException {
+        writeProducts(Collections.singletonList(product), response);
+    }
+
+    static void writeProducts(List<Product> products, HttpServletResponse response) throws IOException {
+        response.setContentType(BinaryHelper.CONTENT_TYPE);
+        OutputStream out = response.getOutputStream();
+        BinaryHelper.writeProducts(products, out);
+        out.flush();
+    }
+
+    static void writeProduct(ProductView product, HttpServletResponse response) throws IOException {
+        response.setContentType(BinaryHelper.CONTENT_TYPE);
+        OutputStream out = response.getOutputStream();
+        BinaryHelper.writeProduct(product, out);
+        out.flush();
+    }
+
+    static void writeProducts(ProductBuffer products, HttpServletResponse response) throws IOException {
+        response.setContentType(BinaryHelper.CONTENT_TYPE);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(response.getOutputStream()));
+        BinaryHelper.writeHeader(products.size(), out);
+        ProductView view = new ProductView();
+        for (int i = 0; i < products.size(); i++) {
+            BinaryHelper.writeRecord(products.view(i, view), out);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,38 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.dao.CatalogLoadingException;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+import org.apache.struts.action.ExceptionHandler;
+import org.apache.struts.config.ExceptionConfig;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Answers writes made during a catalog load (CatalogLoadingException) with
+ * 503 and a Retry-After header, so clients back off instead of treating it
+ * as a server error. The header value comes from the retryAfter property of
+ * the exception mapping in struts-config.xml (seconds, default 5).
+ */
+public class CatalogLoadingExceptionHandler extends ExceptionHandler {
+
+    static final String DEFAULT_RETRY_AFTER = "5";
+
+    @Override
+    public ActionForward execute(Exception ex, ExceptionConfig config, ActionMapping mapping,
+                                 ActionForm form, HttpServletRequest request, HttpServletResponse response)
+            throws ServletException {
+        String retryAfter = config.getProperty("retryAfter");
+        response.setHeader("Retry-After", retryAfter == null ? DEFAULT_RETRY_AFTER : retryAfter);
+        try {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, ex.getMessage());
+        } catch (IOException e) {
+            throw new ServletException(e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.dao.ProductDAO;
+import org.apache.struts.action.Action;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Confirm a stock reservation, making its decrement permanent
+ */
+public class ConfirmReservationAction extends Action {
+
+    @Override
+    public ActionForward execute(ActionMapping mapping, ActionForm form,
+                                  HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+
+        String idStr = request.getParameter("reservationId");
+        if (idStr == null || idStr.isEmpty()) {
+            request.setAttribute("errorMessage", "Reservation ID is required");
+            return mapping.findForward("error");
+        }
+
+        try {
+            long reservationId = Long.parseLong(idStr);
+
+            ProductDAO dao = ProductDAO.getInstance();
+            if (!dao.confirmReservation(reservationId)) {
+                request.setAttribute("errorMessage", "Reservation not found or expired: " + reservationId);
+                return mapping.findForward("error");
+            }
+
+            String format = request.getParameter("format");
+            if ("json".equals(format)) {
+                String json = "{\"success\": true, \"message\": \"Reservation confirmed\"}";
+                request.setAttribute("jsonResponse", json);
+                return mapping.findForward("json");
+            }
+
+            return mapping.findForward("success");
+
+        } catch (NumberFormatException e) {
+            request.setAttribute("errorMessage", "Invalid reservation ID");
+            return mapping.findForward("error");
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.apache.struts.action.ActionMapping;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
 
 /**
  * Delete a product
@@ -38,6 +39,11 @@ public class DeleteProductAction extends Action {
             }
 
             String format = request.getParameter("format");
+            if ("binary".equals(format)) {
+                // Empty record stream signals success
+                BinaryResponses.writeProducts(Collections.emptyList(), response);
+                return null;
+            }
             if ("json".equals(format)) {
                 // Problem: Manual JSON construction for success message
                 String json = "{\"success\": true, \"message\": \"Product deleted\"}";
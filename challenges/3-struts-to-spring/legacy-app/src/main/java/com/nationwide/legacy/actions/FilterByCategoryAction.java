@@ -1,7 +1,7 @@
 package com.nationwide.legacy.actions;
 
+import com.nationwide.legacy.dao.ProductBuffer;
 import com.nationwide.legacy.dao.ProductDAO;
-import com.nationwide.legacy.model.Product;
 import com.nationwide.legacy.util.JsonHelper;
 import org.apache.struts.action.Action;
 import org.apache.struts.action.ActionForm;
@@ -10,7 +10,6 @@ import org.apache.struts.action.ActionMapping;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.List;
 
 /**
  * Filter products by category
@@ -25,19 +24,28 @@ public class FilterByCategoryAction extends Action {
         String category = request.getParameter("category");
 
         ProductDAO dao = ProductDAO.getInstance();
-        List<Product> products = dao.getProductsByCategory(category);
-
-        String format = request.getParameter("format");
-        if ("json".equals(format)) {
-            String json = JsonHelper.productsToJson(products);
-            request.setAttribute("jsonResponse", json);
-            return mapping.findForward("json");
+        ProductBuffer products = ProductBuffer.pooled();
+        try {
+            dao.getProductsByCategory(category, products);
+
+            String format = request.getParameter("format");
+            if ("binary".equals(format)) {
+                BinaryResponses.writeProducts(products, response);
+                return null;
+            }
+            if ("json".equals(format)) {
+                String json = JsonHelper.productsToJson(products);
+                request.setAttribute("jsonResponse", json);
+                return mapping.findForward("json");
+            }
+
+            request.setAttribute("products", products.toList());
+            request.setAttribute("selectedCategory", category);
+            request.setAttribute("productCount", products.size());
+
+            return mapping.findForward("success");
+        } finally {
+            products.clear();
         }
-
-        request.setAttribute("products", products);
-        request.setAttribute("selectedCategory", category);
-        request.setAttribute("productCount", products.size());
-
-        return mapping.findForward("success");
     }
 }
@@ -10,6 +10,7 @@ import org.apache.struts.action.ActionMapping;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -31,16 +32,23 @@ public class ListProductsAction extends Action {
 
         // Problem: Direct DAO access (no service layer, no DI)
         ProductDAO dao = ProductDAO.getInstance();
-        List<Product> products = dao.getAllProducts();
+        List<Product> products;
 
         // Problem: Manual sorting based on request parameter
         String sortBy = request.getParameter("sortBy");
         if (sortBy != null && !sortBy.isEmpty()) {
-            products = sortProducts(products, sortBy);
+            // Each DAO partition sorts its slice and the slices are merged
+            products = dao.getAllProducts(productComparator(sortBy));
+        } else {
+            products = dao.getAllProducts();
         }
 
-        // Check if JSON response is requested
+        // Check if JSON or binary response is requested
         String format = request.getParameter("format");
+        if ("binary".equals(format)) {
+            BinaryResponses.writeProducts(products, response);
+            return null;
+        }
         if ("json".equals(format)) {
             // Problem: Manual JSON construction
             String json = JsonHelper.productsToJson(products);
@@ -56,9 +64,9 @@ public class ListProductsAction extends Action {
     }
 
     // Problem: Business logic in Action class
-    private List<Product> sortProducts(List<Product> products, String sortBy) {
+    private Comparator<Product> productComparator(String sortBy) {
         // Problem: Manual sorting without proper comparator abstraction
-        products.sort((p1, p2) -> {
+        return (p1, p2) -> {
             switch (sortBy) {
                 case "name":
                     return p1.getName().compareToIgnoreCase(p2.getName());
@@ -73,7 +81,6 @@ public class ListProductsAction extends Action {
                 default:
                     return Integer.compare(p1.getId(), p2.getId());
             }
-        });
-        return products;
+        };
     }
 }
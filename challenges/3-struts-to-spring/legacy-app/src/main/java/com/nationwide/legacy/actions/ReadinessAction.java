@@ -0,0 +1,38 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.dao.ProductDAO;
+import com.nationwide.legacy.util.JsonHelper;
+import org.apache.struts.action.Action;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Readiness probe: 200 once the catalog is loaded, 503 while it is loading
+ * (always JSON)
+ */
+public class ReadinessAction extends Action {
+
+    @Override
+    public ActionForward execute(ActionMapping mapping, ActionForm form,
+                                  HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+
+        ProductDAO dao = ProductDAO.getInstance();
+        boolean ready = dao.isReady();
+        if (!ready) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("ready", ready);
+        status.put("productCount", dao.getProductCount());
+        request.setAttribute("jsonResponse", JsonHelper.mapToJson(status));
+        return mapping.findForward("json");
+    }
+}
@@ -0,0 +1,27 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.replication.ReplicationManager;
+import com.nationwide.legacy.util.JsonHelper;
+import org.apache.struts.action.Action;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Report this node's replication role, position and lag (always JSON)
+ */
+public class ReplicationStatusAction extends Action {
+
+    @Override
+    public ActionForward execute(ActionMapping mapping, ActionForm form,
+                                  HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+
+        String json = JsonHelper.mapToJson(ReplicationManager.getInstance().getStatus());
+        request.setAttribute("jsonResponse", json);
+        return mapping.findForward("json");
+    }
+}
@@ -0,0 +1,73 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.dao.InsufficientStockException;
+import com.nationwide.legacy.dao.ProductDAO;
+import com.nationwide.legacy.model.StockReservation;
+import com.nationwide.legacy.util.JsonHelper;
+import org.apache.struts.action.Action;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserve stock for an order (id + quantity, or items=id:quantity,...)
+ *
+ * The units stay out of stock until confirmReservation.do or
+ * cancelReservation.do, or until ttl seconds (default 300, at most one
+ * day) pass.
+ */
+public class ReserveStockAction extends Action {
+
+    private static final long DEFAULT_TTL_SECONDS = 300;
+    private static final long MAX_TTL_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    @Override
+    public ActionForward execute(ActionMapping mapping, ActionForm form,
+                                  HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+
+        try {
+            Map<Integer, Integer> lines = StockLines.parse(request, "quantity");
+
+            long ttlSeconds = DEFAULT_TTL_SECONDS;
+            String ttlStr = request.getParameter("ttl");
+            if (ttlStr != null && !ttlStr.isEmpty()) {
+                ttlSeconds = Long.parseLong(ttlStr);
+            }
+            if (ttlSeconds <= 0 || ttlSeconds > MAX_TTL_SECONDS) {
+                request.setAttribute("errorMessage", "TTL must be between 1 and " + MAX_TTL_SECONDS + " seconds");
+                return mapping.findForward("error");
+            }
+
+            ProductDAO dao = ProductDAO.getInstance();
+            StockReservation reservation = dao.reserveStock(lines, TimeUnit.SECONDS.toMillis(ttlSeconds));
+
+            if (reservation == null) {
+                request.setAttribute("errorMessage", "Product not found: " + lines.keySet());
+                return mapping.findForward("error");
+            }
+
+            String format = request.getParameter("format");
+            if ("json".equals(format)) {
+                String json = JsonHelper.reservationToJson(reservation);
+                request.setAttribute("jsonResponse", json);
+                return mapping.findForward("json");
+            }
+
+            request.setAttribute("reservation", reservation);
+            return mapping.findForward("success");
+
+        } catch (NumberFormatException e) {
+            request.setAttribute("errorMessage", "Invalid number format: " + e.getMessage());
+            return mapping.findForward("error");
+        } catch (IllegalArgumentException | InsufficientStockException e) {
+            request.setAttribute("errorMessage", e.getMessage());
+            return mapping.findForward("error");
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package com.nationwide.legacy.actions;
 
+import com.nationwide.legacy.dao.ProductBuffer;
 import com.nationwide.legacy.dao.ProductDAO;
 import com.nationwide.legacy.forms.SearchForm;
-import com.nationwide.legacy.model.Product;
 import com.nationwide.legacy.util.JsonHelper;
 import org.apache.struts.action.Action;
 import org.apache.struts.action.ActionForm;
@@ -11,13 +11,19 @@ import org.apache.struts.action.ActionMapping;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.List;
 
 /**
  * Search products by name
+ *
+ * With mode=ranked the query words are matched against names and
+ * categories and the best limit results come back by relevance;
+ * fuzzy=true also matches words with one typo.
  */
 public class SearchProductsAction extends Action {
 
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+
     @Override
     public ActionForward execute(ActionMapping mapping, ActionForm form,
                                   HttpServletRequest request, HttpServletResponse response)
@@ -27,19 +33,43 @@ public class SearchProductsAction extends Action {
         String query = searchForm.getQuery();
 
         ProductDAO dao = ProductDAO.getInstance();
-        List<Product> products = dao.searchProducts(query);
+        ProductBuffer products = ProductBuffer.pooled();
+        try {
+            if ("ranked".equals(request.getParameter("mode"))) {
+                int limit = DEFAULT_LIMIT;
+                String limitStr = request.getParameter("limit");
+                if (limitStr != null && !limitStr.isEmpty()) {
+                    try {
+                        limit = Math.min(Integer.parseInt(limitStr), MAX_LIMIT);
+                    } catch (NumberFormatException e) {
+                        request.setAttribute("errorMessage", "Invalid limit");
+                        return mapping.findForward("error");
+                    }
+                }
+                boolean fuzzy = "true".equals(request.getParameter("fuzzy"));
+                dao.rankedSearch(query, limit, fuzzy, products);
+            } else {
+                dao.searchProducts(query, products);
+            }
 
-        String format = request.getParameter("format");
-        if ("json".equals(format)) {
-            String json = JsonHelper.productsToJson(products);
-            request.setAttribute("jsonResponse", json);
-            return mapping.findForward("json");
-        }
+            String format = request.getParameter("format");
+            if ("binary".equals(format)) {
+                BinaryResponses.writeProducts(products, response);
+                return null;
+            }
+            if ("json".equals(format)) {
+                String json = JsonHelper.productsToJson(products);
+                request.setAttribute("jsonResponse", json);
+                return mapping.findForward("json");
+            }
 
-        request.setAttribute("products", products);
-        request.setAttribute("searchQuery", query);
-        request.setAttribute("productCount", products.size());
+            request.setAttribute("products", products.toList());
+            request.setAttribute("searchQuery", query);
+            request.setAttribute("productCount", products.size());
 
-        return mapping.findForward("success");
+            return mapping.findForward("success");
+        } finally {
+            products.clear();
+        }
     }
 }
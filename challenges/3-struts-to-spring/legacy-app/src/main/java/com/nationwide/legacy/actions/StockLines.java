@@ -0,0 +1,45 @@
+package com.nationwide.legacy.actions;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses the product lines of a stock request: either a single
+ * id + amount pair or items=id:amount,id:amount for multi-line orders
+ */
+final class StockLines {
+
+    private StockLines() {
+    }
+
+    /**
+     * @throws NumberFormatException if an id or amount is not a number
+     * @throws IllegalArgumentException if no lines were given or an id repeats
+     */
+    static Map<Integer, Integer> parse(HttpServletRequest request, String amountParam) {
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        String items = request.getParameter("items");
+        if (items != null && !items.trim().isEmpty()) {
+            for (String item : items.split(",")) {
+                String[] parts = item.trim().split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Invalid item: " + item);
+                }
+                int id = Integer.parseInt(parts[0].trim());
+                if (lines.put(id, Integer.parseInt(parts[1].trim())) != null) {
+                    throw new IllegalArgumentException("Product listed twice: " + id);
+                }
+            }
+            return lines;
+        }
+
+        String idStr = request.getParameter("id");
+        String amountStr = request.getParameter(amountParam);
+        if (idStr == null || idStr.isEmpty() || amountStr == null || amountStr.isEmpty()) {
+            throw new IllegalArgumentException("Product ID and " + amountParam + " (or items) are required");
+        }
+        lines.put(Integer.parseInt(idStr), Integer.parseInt(amountStr));
+        return lines;
+    }
+}
@@ -0,0 +1,61 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.dao.ProductDAO;
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.util.JsonHelper;
+import org.apache.struts.action.Action;
+import org.apache.struts.action.ActionForm;
+import org.apache.struts.action.ActionForward;
+import org.apache.struts.action.ActionMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+
+/**
+ * Typeahead suggestions: best-ranked products with a name word starting
+ * with the given prefix. limit is capped at the DAO's typeahead limit.
+ */
+public class TypeaheadAction extends Action {
+
+    private static final int DEFAULT_LIMIT = 10;
+
+    @Override
+    public ActionForward execute(ActionMapping mapping, ActionForm form,
+                                  HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+
+        String prefix = request.getParameter("prefix");
+
+        ProductDAO dao = ProductDAO.getInstance();
+        int limit = DEFAULT_LIMIT;
+        String limitStr = request.getParameter("limit");
+        if (limitStr != null && !limitStr.isEmpty()) {
+            try {
+                limit = Math.min(Integer.parseInt(limitStr), dao.getTypeaheadLimit());
+            } catch (NumberFormatException e) {
+                request.setAttribute("errorMessage", "Invalid limit");
+                return mapping.findForward("error");
+            }
+        }
+
+        List<Product> products = dao.typeahead(prefix, limit);
+
+        String format = request.getParameter("format");
+        if ("binary".equals(format)) {
+            BinaryResponses.writeProducts(products, response);
+            return null;
+        }
+        if ("json".equals(format)) {
+            String json = JsonHelper.productsToJson(products);
+            request.setAttribute("jsonResponse", json);
+            return mapping.findForward("json");
+        }
+
+        request.setAttribute("products", products);
+        request.setAttribute("searchQuery", prefix);
+        request.setAttribute("productCount", products.size());
+
+        return mapping.findForward("success");
+    }
+}
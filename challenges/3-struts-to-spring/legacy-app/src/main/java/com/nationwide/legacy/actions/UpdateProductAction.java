@@ -43,6 +43,10 @@ public class UpdateProductAction extends Action {
             }
 
             String format = request.getParameter("format");
+            if ("binary".equals(format)) {
+                BinaryResponses.writeProduct(updatedProduct, response);
+                return null;
+            }
             if ("json".equals(format)) {
                 String json = JsonHelper.productToJson(updatedProduct);
                 request.setAttribute("jsonResponse", json);
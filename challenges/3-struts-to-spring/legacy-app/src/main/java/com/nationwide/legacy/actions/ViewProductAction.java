@@ -1,7 +1,7 @@
 package com.nationwide.legacy.actions;
 
 import com.nationwide.legacy.dao.ProductDAO;
-import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.ProductView;
 import com.nationwide.legacy.util.JsonHelper;
 import org.apache.struts.action.Action;
 import org.apache.struts.action.ActionForm;
@@ -37,14 +37,19 @@ public class ViewProductAction extends Action {
         }
 
         ProductDAO dao = ProductDAO.getInstance();
-        Product product = dao.getProductById(id);
+        // Rendered before this thread handles another request
+        ProductView product = ProductView.pooled();
 
-        if (product == null) {
+        if (!dao.getProductById(id, product)) {
             request.setAttribute("errorMessage", "Product not found: " + id);
             return mapping.findForward("error");
         }
 
         String format = request.getParameter("format");
+        if ("binary".equals(format)) {
+            BinaryResponses.writeProduct(product, response);
+            return null;
+        }
         if ("json".equals(format)) {
             String json = JsonHelper.productToJson(product);
             request.setAttribute("jsonResponse", json);
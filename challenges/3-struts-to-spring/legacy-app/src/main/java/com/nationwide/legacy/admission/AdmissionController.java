@@ -0,0 +1,102 @@
+package com.nationwide.legacy.admission;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Holds one AdmissionLimiter per Struts action path
+ *
+ * Paths are action paths without the .do suffix ("/listProducts"). Each
+ * action path maps to one action class, so these are per-action limits.
+ * Paths without their own settings get the defaults; exempt paths (health
+ * and status probes) are never limited.
+ *
+ * Limiters exist only for the action paths known at configure time. Any
+ * other path (a typo, a scanner probing /x1.do, /x2.do, ...) shares one
+ * limiter, so unmapped requests cannot grow the table.
+ */
+public class AdmissionController {
+
+    private static AdmissionController instance;
+
+    static final String OTHER_PATHS = "(other)";
+
+    private volatile Map<String, AdmissionLimiter> limiters = Collections.emptyMap();
+    private volatile AdmissionLimiter otherLimiter;
+    private volatile boolean enabled;
+    private volatile int retryAfterSeconds = 1;
+    private volatile Set<String> exempt = Collections.emptySet();
+
+    private AdmissionController() {
+    }
+
+    public static synchronized AdmissionController getInstance() {
+        if (instance == null) {
+            instance = new AdmissionController();
+        }
+        return instance;
+    }
+
+    /**
+     * Install new settings; counters and adaptive limits start over
+     *
+     * @param actionPaths the mapped action paths; paths with overrides are
+     *                    always included, everything else shares one limiter
+     */
+    public synchronized void configure(AdmissionSettings defaults, Map<String, AdmissionSettings> overrides,
+                                       Set<String> exempt, Set<String> actionPaths, int retryAfterSeconds) {
+        Set<String> limited = new HashSet<>(actionPaths);
+        limited.addAll(overrides.keySet());
+        limited.removeAll(exempt);
+        Map<String, AdmissionLimiter> created = new HashMap<>();
+        for (String path : limited) {
+            created.put(path, new AdmissionLimiter(overrides.getOrDefault(path, defaults)));
+        }
+        this.exempt = new HashSet<>(exempt);
+        this.retryAfterSeconds = retryAfterSeconds;
+        limiters = created;
+        otherLimiter = new AdmissionLimiter(defaults);
+        enabled = true;
+    }
+
+    public synchronized void disable() {
+        enabled = false;
+        limiters = Collections.emptyMap();
+        otherLimiter = null;
+    }
+
+    /**
+     * The limiter for an action path, or null if the path is not limited
+     */
+    public AdmissionLimiter limiterFor(String path) {
+        if (!enabled || exempt.contains(path)) {
+            return null;
+        }
+        AdmissionLimiter limiter = limiters.get(path);
+        return limiter != null ? limiter : otherLimiter;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        Map<String, Object> paths = new TreeMap<>();
+        for (Map.Entry<String, AdmissionLimiter> entry : limiters.entrySet()) {
+            paths.put(entry.getKey(), entry.getValue().getStatus());
+        }
+        AdmissionLimiter other = otherLimiter;
+        if (other != null) {
+            paths.put(OTHER_PATHS, other.getStatus());
+        }
+        status.put("actions", paths);
+        return status;
+    }
+}
@@ -0,0 +1,139 @@
+package com.nationwide.legacy.admission;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency limit with a bounded wait queue for one action path
+ *
+ * A request runs at once while fewer than limit requests are in flight and
+ * nobody is queued ahead of it. Otherwise it waits, up to the configured
+ * time, for a slot; when the queue is full or the wait runs out it is shed.
+ *
+ * The limit adapts to latency in the manner of a gradient limiter: each
+ * completed request updates a smoothed latency, which is compared with
+ * the best latency of the recent sample windows. While the smoothed
+ * latency stays within tolerance of that baseline the limit grows by
+ * about sqrt(limit); as latency climbs past it the limit shrinks in
+ * proportion (by at most half per sample, smoothed). The limit does not
+ * grow while less than half of it is in use.
+ */
+public class AdmissionLimiter {
+
+    private static final int WINDOW_SAMPLES = 500;
+    private static final double RTT_SMOOTHING = 0.1;
+    private static final double LIMIT_SMOOTHING = 0.2;
+
+    private final AdmissionSettings settings;
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+
+    private double smoothedRtt;
+    private long baselineRtt = Long.MAX_VALUE;
+    private long windowMinRtt = Long.MAX_VALUE;
+    private int windowSamples;
+
+    private long admitted;
+    private long queued;
+    private long rejected;
+    private long timedOut;
+
+    public AdmissionLimiter(AdmissionSettings settings) {
+        this.settings = settings;
+        this.limit = settings.limit;
+    }
+
+    /**
+     * Take a slot, waiting in the queue if necessary; false if the request
+     * was shed. A true result must be paired with release().
+     */
+    public synchronized boolean acquire() throws InterruptedException {
+        if (waiting == 0 && inFlight < currentLimit()) {
+            inFlight++;
+            admitted++;
+            return true;
+        }
+        if (waiting >= settings.queue || settings.waitMillis == 0) {
+            rejected++;
+            return false;
+        }
+
+        waiting++;
+        queued++;
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.waitMillis);
+            while (inFlight >= currentLimit()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timedOut++;
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            inFlight++;
+            admitted++;
+            return true;
+        } finally {
+            waiting--;
+        }
+    }
+
+    /**
+     * Give back a slot taken by acquire(), reporting how long the request
+     * ran
+     */
+    public synchronized void release(long elapsedNanos) {
+        inFlight--;
+        if (settings.adaptive) {
+            sample(Math.max(1, elapsedNanos));
+        }
+        if (waiting > 0) {
+            notifyAll();
+        }
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("limit", currentLimit());
+        status.put("inFlight", inFlight);
+        status.put("waiting", waiting);
+        status.put("admitted", admitted);
+        status.put("queued", queued);
+        status.put("shed", rejected + timedOut);
+        status.put("shedQueueFull", rejected);
+        status.put("shedTimedOut", timedOut);
+        status.put("latencyMillis", smoothedRtt / 1e6);
+        return status;
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    private void sample(long rtt) {
+        smoothedRtt = smoothedRtt == 0 ? rtt : smoothedRtt * (1 - RTT_SMOOTHING) + rtt * RTT_SMOOTHING;
+        windowMinRtt = Math.min(windowMinRtt, rtt);
+        baselineRtt = Math.min(baselineRtt, rtt);
+        if (++windowSamples == WINDOW_SAMPLES) {
+            // Let the baseline move up again if the workload got slower for good
+            baselineRtt = windowMinRtt;
+            windowMinRtt = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, settings.tolerance * baselineRtt / smoothedRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        if (target > limit && inFlight + 1 < limit / 2) {
+            return;
+        }
+        double next = limit * (1 - LIMIT_SMOOTHING) + target * LIMIT_SMOOTHING;
+        double previous = limit;
+        limit = Math.max(settings.min, Math.min(settings.max, next));
+        if (currentLimit() > (int) previous && waiting > 0) {
+            notifyAll();
+        }
+    }
+}
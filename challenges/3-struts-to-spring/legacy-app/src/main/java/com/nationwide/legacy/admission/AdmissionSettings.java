@@ -0,0 +1,105 @@
+package com.nationwide.legacy.admission;
+
+/**
+ * Admission limits for one action path
+ *
+ * Parsed from a comma-separated list of key=value pairs; keys that are
+ * left out keep the value of the settings they are applied on top of:
+ *
+ *   limit     starting concurrency limit
+ *   min, max  bounds for the adaptive limit
+ *   queue     requests allowed to wait for a slot (0 = reject at once)
+ *   wait      longest time a queued request waits, in milliseconds
+ *   adaptive  false keeps the limit fixed at its starting value
+ *   tolerance how far (as a multiple of the best recent latency) latency
+ *             may rise before the limit starts to shrink
+ */
+public final class AdmissionSettings {
+
+    public static final AdmissionSettings DEFAULTS =
+            new AdmissionSettings(20, 1, 200, 50, 100, true, 2.0);
+
+    final int limit;
+    final int min;
+    final int max;
+    final int queue;
+    final long waitMillis;
+    final boolean adaptive;
+    final double tolerance;
+
+    private AdmissionSettings(int limit, int min, int max, int queue, long waitMillis,
+                              boolean adaptive, double tolerance) {
+        if (min < 1 || max < min || limit < min || limit > max) {
+            throw new IllegalArgumentException("Admission limits must satisfy 1 <= min <= limit <= max");
+        }
+        if (queue < 0 || waitMillis < 0 || tolerance < 1.0) {
+            throw new IllegalArgumentException("Admission queue and wait must be >= 0 and tolerance >= 1");
+        }
+        this.limit = limit;
+        this.min = min;
+        this.max = max;
+        this.queue = queue;
+        this.waitMillis = waitMillis;
+        this.adaptive = adaptive;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Apply a "key=value,..." spec on top of these settings
+     */
+    public AdmissionSettings with(String spec) {
+        int newLimit = limit;
+        int newMin = min;
+        int newMax = max;
+        int newQueue = queue;
+        long newWait = waitMillis;
+        boolean newAdaptive = adaptive;
+        double newTolerance = tolerance;
+        boolean limitGiven = false;
+        for (String pair : spec.split(",")) {
+            if (pair.trim().isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value in admission settings: " + pair.trim());
+            }
+            String key = pair.substring(0, eq).trim();
+            String value = pair.substring(eq + 1).trim();
+            switch (key) {
+                case "limit":
+                    newLimit = Integer.parseInt(value);
+                    limitGiven = true;
+                    break;
+                case "min":
+                    newMin = Integer.parseInt(value);
+                    break;
+                case "max":
+                    newMax = Integer.parseInt(value);
+                    break;
+                case "queue":
+                    newQueue = Integer.parseInt(value);
+                    break;
+                case "wait":
+                    newWait = Long.parseLong(value);
+                    break;
+                case "adaptive":
+                    newAdaptive = Boolean.parseBoolean(value);
+                    break;
+                case "tolerance":
+                    newTolerance = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown admission setting: " + key);
+            }
+        }
+        if (limitGiven) {
+            // An explicit limit widens inherited bounds rather than failing
+            newMin = Math.min(newMin, newLimit);
+            newMax = Math.max(newMax, newLimit);
+        } else {
+            newLimit = Math.max(newMin, Math.min(newMax, newLimit));
+        }
+        return new AdmissionSettings(newLimit, newMin, newMax, newQueue, newWait, newAdaptive, newTolerance);
+    }
+}
@@ -0,0 +1,13 @@
+package com.nationwide.legacy.dao;
+
+/**
+ * Thrown by writes while a catalog snapshot is loading; nothing has been
+ * changed, and the write can be retried once the store is ready again
+ */
+public class CatalogLoadingException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public CatalogLoadingException() {
+        super("The product catalog is loading; retry later");
+    }
+}
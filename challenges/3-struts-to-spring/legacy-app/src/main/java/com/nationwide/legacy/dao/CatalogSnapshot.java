@@ -0,0 +1,188 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.util.BinaryHelper;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary catalog snapshot that ProductDAO can load at startup
+ *
+ * Layout:
+ *   int magic 0x50534E50 ("PSNP"), int version
+ *   chunks, each: int count, count x product record (BinaryHelper layout)
+ *   index: int chunkCount, chunkCount x (long offset, int length, int rows)
+ *   trailer: long indexOffset, int magic
+ *
+ * Chunks are independent, so a reader can decode them in parallel with
+ * positional reads after reading the index from the end of the file.
+ * Files are produced offline by tools.SnapshotConverter.
+ */
+public final class CatalogSnapshot {
+
+    public static final int MAGIC = 0x50534E50;
+    public static final int VERSION = 1;
+    public static final int DEFAULT_CHUNK_ROWS = 65536;
+
+    private static final int TRAILER_BYTES = 12;
+
+    private CatalogSnapshot() {
+    }
+
+    /**
+     * Streams products into a snapshot file, one chunk at a time
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final int chunkRows;
+        private final List<long[]> index = new ArrayList<>();
+        private final ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream();
+        private DataOutputStream chunk = new DataOutputStream(chunkBytes);
+        private int chunkCount;
+        private long position;
+        private long total;
+
+        public Writer(File file, int chunkRows) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            this.chunkRows = chunkRows;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            position = 8;
+        }
+
+        public void add(Product product) throws IOException {
+            BinaryHelper.writeRecord(product, chunk);
+            total++;
+            if (++chunkCount == chunkRows) {
+                flushChunk();
+            }
+        }
+
+        public long getProductCount() {
+            return total;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (chunkCount > 0) {
+                    flushChunk();
+                }
+                long indexOffset = position;
+                out.writeInt(index.size());
+                for (long[] entry : index) {
+                    out.writeLong(entry[0]);
+                    out.writeInt((int) entry[1]);
+                    out.writeInt((int) entry[2]);
+                }
+                out.writeLong(indexOffset);
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            chunk.flush();
+            int length = 4 + chunkBytes.size();
+            index.add(new long[] {position, length, chunkCount});
+            out.writeInt(chunkCount);
+            chunkBytes.writeTo(out);
+            position += length;
+            chunkBytes.reset();
+            chunk = new DataOutputStream(chunkBytes);
+            chunkCount = 0;
+        }
+    }
+
+    /**
+     * Read access to a snapshot file; chunks may be read from several
+     * threads at once
+     */
+    static class Reader implements Closeable {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final long[] offsets;
+        private final int[] lengths;
+        private final int[] rows;
+
+        Reader(File path) throws IOException {
+            file = new RandomAccessFile(path, "r");
+            channel = file.getChannel();
+            try {
+                DataInputStream header = read(0, 8);
+                if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                    throw new IOException("Not a version " + VERSION + " catalog snapshot: " + path);
+                }
+                DataInputStream trailer = read(channel.size() - TRAILER_BYTES, TRAILER_BYTES);
+                long indexOffset = trailer.readLong();
+                if (trailer.readInt() != MAGIC) {
+                    throw new IOException("Truncated catalog snapshot: " + path);
+                }
+                DataInputStream in = read(indexOffset, (int) (channel.size() - TRAILER_BYTES - indexOffset));
+                int chunks = in.readInt();
+                offsets = new long[chunks];
+                lengths = new int[chunks];
+                rows = new int[chunks];
+                for (int i = 0; i < chunks; i++) {
+                    offsets[i] = in.readLong();
+                    lengths[i] = in.readInt();
+                    rows[i] = in.readInt();
+                }
+            } catch (IOException | RuntimeException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        int getChunkCount() {
+            return offsets.length;
+        }
+
+        long getProductCount() {
+            long total = 0;
+            for (int count : rows) {
+                total += count;
+            }
+            return total;
+        }
+
+        List<Product> readChunk(int chunk) throws IOException {
+            DataInputStream in = read(offsets[chunk], lengths[chunk]);
+            int count = in.readInt();
+            List<Product> products = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                products.add(BinaryHelper.readRecord(in));
+            }
+            return products;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+
+        private DataInputStream read(long offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of catalog snapshot");
+                }
+            }
+            return new DataInputStream(new ByteArrayInputStream(buffer.array()));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.nationwide.legacy.dao;
+
+/**
+ * Thrown when a stock decrement or reservation asks for more units than
+ * are available; nothing has been changed when it is thrown
+ */
+public class InsufficientStockException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int productId;
+    private final int requested;
+    private final int available;
+
+    public InsufficientStockException(int productId, int requested, int available) {
+        super("Insufficient stock for product " + productId + ": requested " + requested
+                + ", available " + available);
+        this.productId = productId;
+        this.requested = requested;
+        this.available = available;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,42 @@
+package com.nationwide.legacy.dao;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances for repeated strings (categories, product names)
+ *
+ * Stored products share one String per distinct value instead of one per
+ * row. The table stops growing at its capacity; values seen after that are
+ * kept as they are, so a catalog of mostly unique names cannot make it
+ * grow without bound. Entries are never removed: each ProductDAO Catalog
+ * owns its tables, so they are dropped together with that Catalog when a
+ * reset, snapshot load or replicated snapshot swaps in a new one.
+ */
+class InternTable {
+
+    private final ConcurrentHashMap<String, String> table = new ConcurrentHashMap<>();
+    private final int capacity;
+
+    InternTable(int capacity) {
+        this.capacity = capacity;
+    }
+
+    String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String canonical = table.get(value);
+        if (canonical != null) {
+            return canonical;
+        }
+        if (table.size() >= capacity) {
+            return value;
+        }
+        canonical = table.putIfAbsent(value, value);
+        return canonical != null ? canonical : value;
+    }
+
+    int size() {
+        return table.size();
+    }
+}
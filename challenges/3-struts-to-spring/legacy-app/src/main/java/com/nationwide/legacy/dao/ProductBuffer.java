@@ -0,0 +1,165 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.ProductView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable result buffer for ProductDAO queries
+ *
+ * Holds references to the stored products (no copies), read back through
+ * a ProductView. Once the buffer has grown to the size of the largest
+ * result it sees, filling it again does not allocate. Callers either keep
+ * their own buffer or borrow the calling thread's with pooled(); a pooled
+ * buffer is only valid until the same thread borrows it again. clear()
+ * shrinks a buffer that has grown past MAX_RETAINED_CAPACITY, so a thread
+ * that once listed the whole catalog does not keep an array that size;
+ * the DAO empties buffers without shrinking them.
+ */
+public final class ProductBuffer {
+
+    private static final ThreadLocal<ProductBuffer> POOL = ThreadLocal.withInitial(ProductBuffer::new);
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    static final int MAX_RETAINED_CAPACITY = 4 * DEFAULT_CAPACITY;
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private Product[] items;
+    private int size;
+
+    public ProductBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ProductBuffer(int initialCapacity) {
+        items = new Product[Math.max(1, initialCapacity)];
+    }
+
+    /**
+     * This thread's buffer, emptied
+     */
+    public static ProductBuffer pooled() {
+        ProductBuffer buffer = POOL.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Point the given view at the product at index; returns the view
+     */
+    public ProductView view(int index, ProductView into) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return into.wrap(items[index]);
+    }
+
+    /**
+     * Copy the references out into a new list, for code that needs one
+     */
+    public List<Product> toList() {
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            products.add(items[i]);
+        }
+        return products;
+    }
+
+    public void clear() {
+        if (items.length > MAX_RETAINED_CAPACITY) {
+            items = new Product[DEFAULT_CAPACITY];
+            size = 0;
+        } else {
+            reset();
+        }
+    }
+
+    void reset() {
+        // Drop the references so a pooled buffer does not pin deleted products
+        Arrays.fill(items, 0, size, null);
+        size = 0;
+    }
+
+    int capacity() {
+        return items.length;
+    }
+
+    void add(Product product) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        items[size++] = product;
+    }
+
+    void addAll(List<Product> products) {
+        if (size + products.size() > items.length) {
+            items = Arrays.copyOf(items, Math.max(size + products.size(), items.length * 2));
+        }
+        for (Product product : products) {
+            items[size++] = product;
+        }
+    }
+
+    /**
+     * In-place sort by id; unlike Arrays.sort it needs no scratch space
+     */
+    void sortById() {
+        quickSort(0, size - 1);
+    }
+
+    private void quickSort(int lo, int hi) {
+        while (hi - lo >= INSERTION_SORT_THRESHOLD) {
+            int mid = (lo + hi) >>> 1;
+            int pivot = median(items[lo].id, items[mid].id, items[hi].id);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (items[i].id < pivot) {
+                    i++;
+                }
+                while (items[j].id > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // Recurse into the smaller half to bound the stack depth
+            if (j - lo < hi - i) {
+                quickSort(lo, j);
+                lo = i;
+            } else {
+                quickSort(i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            Product product = items[i];
+            int j = i - 1;
+            while (j >= lo && items[j].id > product.id) {
+                items[j + 1] = items[j];
+                j--;
+            }
+            items[j + 1] = product;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Product product = items[i];
+        items[i] = items[j];
+        items[j] = product;
+    }
+
+    private static int median(int a, int b, int c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+}
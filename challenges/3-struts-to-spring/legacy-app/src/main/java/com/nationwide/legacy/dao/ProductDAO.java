@@ -1,13 +1,67 @@
 package com.nationwide.legacy.dao;
 
 import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.ProductView;
+import com.nationwide.legacy.model.StockReservation;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Data Access Object for Products - Legacy pattern
  *
+ * The store is split into hash partitions by product id (see
+ * ProductPartition). Point lookups and writes lock only their own
+ * partition; scans (search, category filter, sorted listings) run on every
+ * partition - in parallel on a ForkJoin pool once the catalog is larger
+ * than the parallel threshold - and the sorted slices are merged. Scans are
+ * not a point-in-time snapshot across partitions.
+ *
+ * Stock adjustments and reservations change Product.stock with
+ * compare-and-set on the live record and take no lock unless a replication
+ * listener is installed (then only the product's partition, to ship the
+ * new value in order).
+ *
+ * Names and categories are also indexed for ranked full-text search (see
+ * RelevanceIndex); like the typeahead index it is updated by every write.
+ *
+ * Stored products share canonical category and name strings (see
+ * InternTable). Point lookups, category filters and searches can also
+ * fill a ProductView or ProductBuffer supplied by the caller, which does
+ * not allocate once the buffer has grown to size.
+ *
+ * At boot the catalog can be replaced from a CatalogSnapshot file with
+ * loadSnapshot(); chunks are decoded and stored in parallel into a new
+ * Catalog that is swapped in when complete, and isReady() stays false
+ * until then. From markLoading() until the load has finished writes fail
+ * fast with a CatalogLoadingException (see WriteGate), so none of them can
+ * be lost or reuse a loaded id.
+ *
+ * Replication hooks: a ProductMutationListener sees every committed write
+ * (the leader ships them to followers), and a ProductWriteForwarder, when
+ * installed, sends writes elsewhere instead of applying them here (followers
+ * forward to the leader). The applyReplicated* methods skip the forwarder.
+ * A replicated snapshot is built into a new Catalog (partitions and
+ * indexes) and swapped in whole, so reads keep seeing the previous catalog
+ * until it is complete.
+ *
+ * Tuning (system properties):
+ *   productDAO.partitions         number of partitions (default 2 x cores)
+ *   productDAO.parallelThreshold  catalog size below which scans stay sequential
+ *   productDAO.typeaheadRank      typeahead ranking: stock (default), price, price_asc
+ *   productDAO.typeaheadCacheSize results cached per typeahead trie node
+ *   productDAO.internNames        distinct product names to intern (default 65536)
+ *
  * ANTI-PATTERNS:
  * - Singleton pattern (global state)
  * - In-memory storage (no database)
@@ -20,15 +74,53 @@ public class ProductDAO {
     // Problem: Singleton instance (global mutable state)
     private static ProductDAO instance;
 
-    // Problem: In-memory storage using HashMap
-    private Map<Integer, Product> products;
-    private int nextId;
+    private static final int PARTITION_COUNT = Math.max(1,
+            Integer.getInteger("productDAO.partitions", Runtime.getRuntime().availableProcessors() * 2));
+
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger("productDAO.parallelThreshold", 8192);
+
+    private static final int TYPEAHEAD_CACHE_SIZE = Integer.getInteger("productDAO.typeaheadCacheSize", 16);
+
+    private static final int INTERN_NAMES = Integer.getInteger("productDAO.internNames", 65536);
+
+    private static final int INTERN_CATEGORIES = 65536;
+
+    private static final Comparator<Product> BY_ID = Comparator.comparingInt(Product::getId);
+
+    private static final AtomicIntegerFieldUpdater<Product> STOCK =
+            AtomicIntegerFieldUpdater.newUpdater(Product.class, "stock");
+
+    private final int partitionCount;
+    private final int parallelThreshold;
+    private final ForkJoinPool queryPool;
+    private final AtomicInteger nextId;
+    private final ToDoubleFunction<Product> typeaheadScore;
+    private final StockReservations reservations;
+    private final WriteGate writes = new WriteGate();
+
+    private volatile Catalog catalog;
+
+    private volatile boolean ready = true;
+    private volatile ProductMutationListener mutationListener;
+    private volatile ProductWriteForwarder writeForwarder;
 
     // Problem: Private constructor for singleton
     private ProductDAO() {
-        products = new HashMap<>();
-        nextId = 1;
-        initializeData();
+        this(PARTITION_COUNT, PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * A store of its own with the given partitioning, for tests
+     */
+    ProductDAO(int partitionCount, int parallelThreshold) {
+        this.partitionCount = partitionCount;
+        this.parallelThreshold = parallelThreshold;
+        queryPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        nextId = new AtomicInteger(1);
+        typeaheadScore = typeaheadScore(System.getProperty("productDAO.typeaheadRank", "stock"));
+        catalog = new Catalog();
+        reservations = new StockReservations(this);
+        storeAll(catalog, initialData());
     }
 
     // Problem: Singleton getInstance() pattern
@@ -39,81 +131,843 @@ public class ProductDAO {
         return instance;
     }
 
+    /**
+     * Stop the query pool and the reservation sweeper (web application
+     * undeploy). Open reservations no longer expire and large queries
+     * fail afterwards, so nothing may use the store after this.
+     */
+    public void shutdown() {
+        queryPool.shutdownNow();
+        reservations.shutdown();
+    }
+
     // Initialize with test data (from products.json)
-    private void initializeData() {
-        addProduct(new Product(1, "Widget Pro", "Tools", 29.99, 150));
-        addProduct(new Product(2, "Gadget Max", "Electronics", 199.99, 45));
-        addProduct(new Product(3, "Tool Kit", "Tools", 89.99, 80));
-        addProduct(new Product(4, "Smart Device", "Electronics", 299.99, 30));
-        addProduct(new Product(5, "Basic Widget", "Tools", 9.99, 200));
-        nextId = 6; // Next available ID
+    private static List<Product> initialData() {
+        List<Product> products = new ArrayList<>();
+        products.add(new Product(1, "Widget Pro", "Tools", 29.99, 150));
+        products.add(new Product(2, "Gadget Max", "Electronics", 199.99, 45));
+        products.add(new Product(3, "Tool Kit", "Tools", 89.99, 80));
+        products.add(new Product(4, "Smart Device", "Electronics", 299.99, 30));
+        products.add(new Product(5, "Basic Widget", "Tools", 9.99, 200));
+        return products; // storeAll moves nextId to 6
     }
 
-    // Problem: Manual synchronization instead of using concurrent collections
-    public synchronized List<Product> getAllProducts() {
+    public List<Product> getAllProducts() {
         // Problem: Returning mutable list
-        return new ArrayList<>(products.values());
+        return scatterGather(p -> p.all(BY_ID), BY_ID);
     }
 
-    public synchronized Product getProductById(int id) {
-        return products.get(id);
+    /**
+     * Copies of all products in the given order (ties broken by id); each
+     * copy holds the stock the order was computed from
+     */
+    public List<Product> getAllProducts(Comparator<Product> order) {
+        Comparator<Product> total = order.thenComparing(BY_ID);
+        return scatterGather(p -> p.snapshot(total), total);
     }
 
-    public synchronized Product addProduct(Product product) {
-        if (product.getId() == 0) {
-            product.setId(nextId++);
-        } else {
-            nextId = Math.max(nextId, product.getId() + 1);
+    public Product getProductById(int id) {
+        return catalog.partitionFor(id).get(id);
+    }
+
+    public Product addProduct(Product product) {
+        ProductWriteForwarder forwarder = writeForwarder;
+        if (forwarder != null) {
+            return forwarder.addProduct(product);
+        }
+        writes.enter();
+        try {
+            return insert(product);
+        } finally {
+            writes.exit();
         }
-        products.put(product.getId(), product);
-        return product;
     }
 
-    public synchronized Product updateProduct(Product product) {
+    public Product updateProduct(Product product) {
+        ProductWriteForwarder forwarder = writeForwarder;
+        if (forwarder != null) {
+            return forwarder.updateProduct(product);
+        }
+
         // Problem: No validation if product exists
-        if (products.containsKey(product.getId())) {
-            products.put(product.getId(), product);
+        writes.enter();
+        try {
+            Catalog current = catalog;
+            current.canonicalize(product);
+            ProductPartition partition = current.partitionFor(product.getId());
+            synchronized (partition) {
+                if (partition.replace(product) == null) {
+                    return null;
+                }
+                afterStore(current, product);
+            }
             return product;
+        } finally {
+            writes.exit();
         }
-        return null;
     }
 
-    public synchronized boolean deleteProduct(int id) {
-        return products.remove(id) != null;
+    public boolean deleteProduct(int id) {
+        ProductWriteForwarder forwarder = writeForwarder;
+        if (forwarder != null) {
+            return forwarder.deleteProduct(id);
+        }
+
+        writes.enter();
+        try {
+            Catalog current = catalog;
+            ProductPartition partition = current.partitionFor(id);
+            synchronized (partition) {
+                if (partition.remove(id) == null) {
+                    return false;
+                }
+                afterDelete(current, id);
+            }
+            return true;
+        } finally {
+            writes.exit();
+        }
     }
 
-    public synchronized List<Product> searchProducts(String query) {
+    public List<Product> searchProducts(String query) {
         // Problem: Case-sensitive search, inefficient linear scan
         if (query == null || query.trim().isEmpty()) {
             return getAllProducts();
         }
 
         String lowerQuery = query.toLowerCase();
-        return products.values().stream()
-                .filter(p -> p.getName().toLowerCase().contains(lowerQuery))
-                .collect(Collectors.toList());
+        return scatterGather(p -> p.search(lowerQuery, BY_ID), BY_ID);
     }
 
-    public synchronized List<Product> getProductsByCategory(String category) {
+    public List<Product> getProductsByCategory(String category) {
         // Problem: Case-sensitive filtering
         if (category == null || category.trim().isEmpty()) {
             return getAllProducts();
         }
 
-        return products.values().stream()
-                .filter(p -> category.equals(p.getCategory()))
-                .collect(Collectors.toList());
+        return scatterGather(p -> p.byCategory(category, BY_ID), BY_ID);
+    }
+
+    /**
+     * Point the view at the product with this id; false (and an empty view)
+     * if there is none. Does not allocate.
+     */
+    public boolean getProductById(int id, ProductView into) {
+        return !into.wrap(getProductById(id)).isEmpty();
+    }
+
+    /**
+     * Fill the buffer with all products, ordered by id; returns the count.
+     * Below productDAO.parallelThreshold it does not allocate once the
+     * buffer is large enough; larger catalogs are scanned on the query
+     * pool like the list variant, and the merged result is copied in.
+     */
+    public int getAllProducts(ProductBuffer into) {
+        Catalog current = catalog;
+        if (!scansSequentially(current)) {
+            return fill(into, scatterGather(current, p -> p.all(BY_ID), BY_ID));
+        }
+        into.reset();
+        for (ProductPartition partition : current.partitions) {
+            partition.collectAll(into);
+        }
+        into.sortById();
+        return into.size();
+    }
+
+    /**
+     * Fill the buffer with the products in a category (all products for a
+     * blank category), ordered by id; returns the count. Allocates like
+     * getAllProducts(ProductBuffer).
+     */
+    public int getProductsByCategory(String category, ProductBuffer into) {
+        if (category == null || category.trim().isEmpty()) {
+            return getAllProducts(into);
+        }
+        Catalog current = catalog;
+        if (!scansSequentially(current)) {
+            return fill(into, scatterGather(current, p -> p.byCategory(category, BY_ID), BY_ID));
+        }
+        into.reset();
+        for (ProductPartition partition : current.partitions) {
+            partition.collectCategory(category, into);
+        }
+        into.sortById();
+        return into.size();
+    }
+
+    /**
+     * Fill the buffer with the products whose name contains the query,
+     * ignoring case (all products for a blank query), ordered by id;
+     * returns the count. Allocates like getAllProducts(ProductBuffer), and
+     * for a query that is not already lower case.
+     */
+    public int searchProducts(String query, ProductBuffer into) {
+        if (query == null || query.trim().isEmpty()) {
+            return getAllProducts(into);
+        }
+        String lowerQuery = query.toLowerCase();
+        Catalog current = catalog;
+        if (!scansSequentially(current)) {
+            return fill(into, scatterGather(current, p -> p.search(lowerQuery, BY_ID), BY_ID));
+        }
+        into.reset();
+        for (ProductPartition partition : current.partitions) {
+            partition.collectSearch(lowerQuery, into);
+        }
+        into.sortById();
+        return into.size();
+    }
+
+    /**
+     * Atomically add delta to a product's stock. A negative delta only
+     * succeeds if that many units are available. Returns the product with
+     * its new stock, or null if it does not exist.
+     *
+     * @throws IllegalArgumentException if the stock would overflow
+     */
+    public Product adjustStock(int id, int delta) throws InsufficientStockException {
+        ProductWriteForwarder forwarder = writeForwarder;
+        if (forwarder != null) {
+            List<Product> adjusted = forwarder.adjustStock(Collections.singletonMap(id, delta));
+            return adjusted == null ? null : adjusted.get(0);
+        }
+        writes.enter();
+        try {
+            return casStock(id, delta, true);
+        } finally {
+            writes.exit();
+        }
+    }
+
+    /**
+     * Batched adjustStock for multi-line orders (product id to delta): either
+     * every line is applied or none is. Returns the adjusted products in
+     * line order, or null if any of them does not exist.
+     *
+     * @throws IllegalArgumentException if a stock would overflow or a delta
+     *         is Integer.MIN_VALUE (nothing is changed)
+     */
+    public List<Product> adjustStock(Map<Integer, Integer> deltas) throws InsufficientStockException {
+        ProductWriteForwarder forwarder = writeForwarder;
+        if (forwarder != null) {
+            return forwarder.adjustStock(deltas);
+        }
+        writes.enter();
+        try {
+            return applyDeltas(deltas);
+        } finally {
+            writes.exit();
+        }
+    }
+
+    /**
+     * Take quantities (product id to units, all positive) out of stock until
+     * the reservation is confirmed or cancelled; after ttlMillis it is
+     * cancelled automatically. Returns null if any product does not exist.
+     */
+    public StockReservation reserveStock(Map<Integer, Integer> lines, long ttlMillis)
+            throws InsufficientStockException {
+        ProductWriteForwarder forwarder = writeForwarder;
+        if (forwarder != null) {
+            return forwarder.reserveStock(lines, ttlMillis);
+        }
+        writes.enter();
+        try {
+            return reservations.reserve(lines, ttlMillis);
+        } finally {
+            writes.exit();
+        }
+    }
+
+    /**
+     * Make a reservation permanent; false if it is unknown or has expired
+     */
+    public boolean confirmReservation(long reservationId) {
+        ProductWriteForwarder forwarder = writeForwarder;
+        if (forwarder != null) {
+            return forwarder.confirmReservation(reservationId);
+        }
+        writes.enter();
+        try {
+            return reservations.confirm(reservationId);
+        } finally {
+            writes.exit();
+        }
+    }
+
+    /**
+     * Return a reservation's units to stock; false if it is unknown or has
+     * already expired
+     */
+    public boolean cancelReservation(long reservationId) {
+        ProductWriteForwarder forwarder = writeForwarder;
+        if (forwarder != null) {
+            return forwarder.cancelReservation(reservationId);
+        }
+        writes.enter();
+        try {
+            return reservations.cancel(reservationId);
+        } finally {
+            writes.exit();
+        }
+    }
+
+    /**
+     * Products with a name word starting with the prefix, best ranked first
+     * (see productDAO.typeaheadRank), at most getTypeaheadLimit() of them.
+     * Earlier words of a multi-word prefix must match whole words of the
+     * name.
+     */
+    public List<Product> typeahead(String prefix, int limit) {
+        Catalog current = catalog;
+        List<Product> products = new ArrayList<>();
+        for (int id : current.typeahead.lookup(prefix, limit)) {
+            Product product = current.partitionFor(id).get(id);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Most results typeahead() returns (productDAO.typeaheadCacheSize)
+     */
+    public int getTypeaheadLimit() {
+        return TYPEAHEAD_CACHE_SIZE;
+    }
+
+    /**
+     * Products ranked by BM25 relevance of their name and category to the
+     * query words, best first. With fuzzy, words one edit away from a query
+     * word also match, at a lower weight.
+     */
+    public List<Product> rankedSearch(String query, int limit, boolean fuzzy) {
+        List<Product> products = new ArrayList<>();
+        for (int id : catalog.relevance.search(query, limit, fuzzy)) {
+            Product product = getProductById(id);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * rankedSearch() into a buffer, best first; returns the count
+     */
+    public int rankedSearch(String query, int limit, boolean fuzzy, ProductBuffer into) {
+        into.reset();
+        for (int id : catalog.relevance.search(query, limit, fuzzy)) {
+            Product product = getProductById(id);
+            if (product != null) {
+                into.add(product);
+            }
+        }
+        return into.size();
     }
 
     // Problem: Exposing count method that duplicates logic
-    public synchronized int getProductCount() {
-        return products.size();
+    public int getProductCount() {
+        return catalog.size();
     }
 
     // Problem: Method to reset data (testing only, but exposed publicly)
     public synchronized void resetData() {
-        products.clear();
-        nextId = 1;
-        initializeData();
+        reservations.clear();
+        Catalog next = new Catalog();
+        List<Product> products = initialData();
+        nextId.set(1);
+        storeAll(next, products);
+        catalog = next;
+        shipReset(products);
+    }
+
+    /**
+     * False while a snapshot load is pending or running, or after one failed
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Report not-ready, and turn writes away, until the next loadSnapshot()
+     * finishes
+     */
+    public void markLoading() {
+        ready = false;
+        writes.close();
+    }
+
+    /**
+     * Replace the catalog with the contents of a snapshot file. Writes
+     * throw CatalogLoadingException until it returns; reads see the previous
+     * catalog until the new one is complete.
+     */
+    public synchronized void loadSnapshot(File file) throws IOException {
+        ready = false;
+        try (CatalogSnapshot.Reader reader = new CatalogSnapshot.Reader(file)) {
+            writes.drain();
+            reservations.clear();
+            Catalog next = new Catalog();
+            nextId.set(1);
+
+            List<Future<LoadedChunk>> chunks = new ArrayList<>(reader.getChunkCount());
+            for (int i = 0; i < reader.getChunkCount(); i++) {
+                int chunk = i;
+                chunks.add(queryPool.submit(() -> prepare(next, reader.readChunk(chunk))));
+            }
+            List<LoadedChunk> loaded = new ArrayList<>(chunks.size());
+            List<Product> products = new ArrayList<>();
+            for (Future<LoadedChunk> chunk : chunks) {
+                loaded.add(chunk.get());
+                products.addAll(loaded.get(loaded.size() - 1).products);
+            }
+            install(next, loaded);
+            catalog = next;
+            // Writes are still shut out, so followers get the reset before any write to the new catalog
+            shipReset(products);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + file, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not load " + file, e.getCause());
+        } finally {
+            writes.open();
+        }
+        ready = true;
+    }
+
+    public void setMutationListener(ProductMutationListener listener) {
+        this.mutationListener = listener;
+    }
+
+    public void setWriteForwarder(ProductWriteForwarder forwarder) {
+        this.writeForwarder = forwarder;
+    }
+
+    /**
+     * Apply a product shipped by the replication leader
+     */
+    public void applyReplicatedStore(Product product) {
+        nextId.accumulateAndGet(product.getId() + 1, Math::max);
+        Catalog current = catalog;
+        current.canonicalize(product);
+        ProductPartition partition = current.partitionFor(product.getId());
+        synchronized (partition) {
+            partition.put(product);
+            afterStore(current, product);
+        }
+    }
+
+    /**
+     * Apply a delete shipped by the replication leader
+     */
+    public void applyReplicatedDelete(int id) {
+        Catalog current = catalog;
+        ProductPartition partition = current.partitionFor(id);
+        synchronized (partition) {
+            if (partition.remove(id) != null) {
+                afterDelete(current, id);
+            }
+        }
+    }
+
+    /**
+     * Replace the whole catalog with a snapshot from the replication leader.
+     * The new catalog is built aside; reads see the old one until it is
+     * swapped in.
+     */
+    public synchronized void applyReplicatedSnapshot(List<Product> products) {
+        Catalog next = new Catalog();
+        nextId.set(1);
+        storeAll(next, products);
+        catalog = next;
+        shipReset(products);
+    }
+
+    private Product insert(Product product) {
+        if (product.getId() == 0) {
+            product.setId(nextId.getAndIncrement());
+        } else {
+            nextId.accumulateAndGet(product.getId() + 1, Math::max);
+        }
+        Catalog current = catalog;
+        current.canonicalize(product);
+        ProductPartition partition = current.partitionFor(product.getId());
+        synchronized (partition) {
+            partition.put(product);
+            afterStore(current, product);
+        }
+        return product;
+    }
+
+    /**
+     * Apply all deltas or none. Decrements go first so that a shortfall
+     * only has to roll back decrements, which cannot fail.
+     */
+    List<Product> applyDeltas(Map<Integer, Integer> deltas) throws InsufficientStockException {
+        for (Map.Entry<Integer, Integer> line : deltas.entrySet()) {
+            // Rolling back negates the delta
+            if (line.getValue() == Integer.MIN_VALUE) {
+                throw new IllegalArgumentException("Stock delta out of range: " + line);
+            }
+        }
+        Map<Integer, Product> adjusted = new HashMap<>();
+        List<Map.Entry<Integer, Integer>> applied = new ArrayList<>();
+        try {
+            for (boolean decrements : new boolean[] {true, false}) {
+                for (Map.Entry<Integer, Integer> line : deltas.entrySet()) {
+                    if ((line.getValue() < 0) != decrements) {
+                        continue;
+                    }
+                    Product product = casStock(line.getKey(), line.getValue(), true);
+                    if (product == null) {
+                        rollback(applied);
+                        return null;
+                    }
+                    applied.add(line);
+                    adjusted.put(line.getKey(), product);
+                }
+            }
+        } catch (InsufficientStockException | RuntimeException e) {
+            rollback(applied);
+            throw e;
+        }
+        List<Product> products = new ArrayList<>(deltas.size());
+        for (Integer id : deltas.keySet()) {
+            products.add(adjusted.get(id));
+        }
+        return products;
+    }
+
+    /**
+     * Undo applied deltas without an availability check (saturating if
+     * concurrent changes leave no room)
+     */
+    void rollback(List<Map.Entry<Integer, Integer>> applied) {
+        for (Map.Entry<Integer, Integer> line : applied) {
+            try {
+                casStock(line.getKey(), -line.getValue(), false);
+            } catch (InsufficientStockException e) {
+                throw new IllegalStateException("Unchecked stock adjustment failed", e);
+            }
+        }
+    }
+
+    private Product casStock(int id, int delta, boolean requireAvailable) throws InsufficientStockException {
+        Catalog target = catalog;
+        ProductPartition partition = target.partitionFor(id);
+        while (true) {
+            Product product = partition.get(id);
+            if (product == null) {
+                return null;
+            }
+            int current;
+            int next;
+            do {
+                current = product.stock;
+                long sum = (long) current + delta;
+                if (requireAvailable && sum < 0) {
+                    throw new InsufficientStockException(id, -delta, current);
+                }
+                if (sum != (int) sum) {
+                    if (requireAvailable) {
+                        throw new IllegalArgumentException("Stock of product " + id + " would overflow: "
+                                + current + " + " + delta);
+                    }
+                    sum = Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, sum));
+                }
+                next = (int) sum;
+            } while (!STOCK.compareAndSet(product, current, next));
+
+            if (partition.get(id) == product) {
+                afterStockChange(target, partition, product);
+                return product;
+            }
+            // A concurrent updateProduct replaced the record we adjusted;
+            // apply the delta to the replacement instead
+        }
+    }
+
+    private void afterStockChange(Catalog current, ProductPartition partition, Product product) {
+        current.typeahead.scoreChanged(product.getId());
+        if (mutationListener != null) {
+            // Copy under the partition lock so the last value shipped is the latest
+            synchronized (partition) {
+                if (partition.get(product.getId()) == product) {
+                    shipStore(product);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fill a catalog that is not published yet. Nothing is shipped; the
+     * caller reports the rows.
+     */
+    private void storeAll(Catalog target, List<Product> products) {
+        install(target, Collections.singletonList(prepare(target, products)));
+    }
+
+    // Canonicalizes one chunk and builds its index fragments. Touches no
+    // shared index, so the chunks of a load are prepared concurrently.
+    private LoadedChunk prepare(Catalog target, List<Product> products) {
+        LoadedChunk chunk = new LoadedChunk(products, target.partitions.length);
+        for (Product product : products) {
+            target.canonicalize(product);
+            chunk.byPartition.get(partitionIndex(product.getId(), target.partitions.length)).add(product);
+            chunk.maxId = Math.max(chunk.maxId, product.getId());
+        }
+        chunk.typeahead = target.typeahead.fragment(products);
+        chunk.relevance = target.relevance.fragment(products);
+        return chunk;
+    }
+
+    // Adds prepared chunks in order, so a product given twice keeps its
+    // later row, and merges each index once. The two index merges run
+    // concurrently for a large load.
+    private void install(Catalog target, List<LoadedChunk> chunks) {
+        List<TypeaheadIndex.Fragment> typeaheadFragments = new ArrayList<>(chunks.size());
+        List<RelevanceIndex.Fragment> relevanceFragments = new ArrayList<>(chunks.size());
+        int rows = 0;
+        int maxId = 0;
+        for (LoadedChunk chunk : chunks) {
+            typeaheadFragments.add(chunk.typeahead);
+            relevanceFragments.add(chunk.relevance);
+            rows += chunk.products.size();
+            maxId = Math.max(maxId, chunk.maxId);
+        }
+        ForkJoinTask<?> typeahead = null;
+        if (rows >= parallelThreshold) {
+            typeahead = queryPool.submit(() -> target.typeahead.merge(typeaheadFragments));
+        } else {
+            target.typeahead.merge(typeaheadFragments);
+        }
+        target.relevance.merge(relevanceFragments);
+
+        ProductPartition[] partitions = target.partitions;
+        for (int i = 0; i < partitions.length; i++) {
+            synchronized (partitions[i]) {
+                for (LoadedChunk chunk : chunks) {
+                    for (Product product : chunk.byPartition.get(i)) {
+                        partitions[i].put(product);
+                    }
+                }
+            }
+        }
+        nextId.accumulateAndGet(maxId + 1, Math::max);
+        if (typeahead != null) {
+            typeahead.join();
+        }
+    }
+
+    // Keeps secondary indexes current and informs the listener;
+    // called with the product's partition locked
+    private void afterStore(Catalog current, Product product) {
+        current.typeahead.put(product);
+        current.relevance.put(product);
+        shipStore(product);
+    }
+
+    private void shipStore(Product product) {
+        ProductMutationListener listener = mutationListener;
+        if (listener != null) {
+            listener.productStored(new Product(product.getId(), product.getName(),
+                    product.getCategory(), product.getPrice(), product.getStock()));
+        }
+    }
+
+    private void shipReset(List<Product> products) {
+        ProductMutationListener listener = mutationListener;
+        if (listener != null) {
+            listener.catalogReset(products);
+        }
+    }
+
+    // Called with the product's partition locked
+    private void afterDelete(Catalog current, int id) {
+        current.typeahead.remove(id);
+        current.relevance.remove(id);
+        ProductMutationListener listener = mutationListener;
+        if (listener != null) {
+            listener.productDeleted(id);
+        }
+    }
+
+    private static ToDoubleFunction<Product> typeaheadScore(String rankBy) {
+        switch (rankBy) {
+            case "stock":
+                return Product::getStock;
+            case "price":
+                return Product::getPrice;
+            case "price_asc":
+                return p -> -p.getPrice();
+            default:
+                throw new IllegalArgumentException("Unknown productDAO.typeaheadRank: " + rankBy);
+        }
+    }
+
+    static int partitionIndex(int id, int partitionCount) {
+        int h = id * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), partitionCount);
+    }
+
+    /**
+     * Run a query on every partition and merge the sorted slices. Small
+     * catalogs are scanned on the calling thread; larger ones fan out on
+     * the query pool.
+     */
+    private List<Product> scatterGather(Function<ProductPartition, List<Product>> query,
+                                        Comparator<Product> order) {
+        return scatterGather(catalog, query, order);
+    }
+
+    private List<Product> scatterGather(Catalog current, Function<ProductPartition, List<Product>> query,
+                                        Comparator<Product> order) {
+        ProductPartition[] partitions = current.partitions;
+        List<List<Product>> slices;
+        if (scansSequentially(current)) {
+            slices = new ArrayList<>(partitions.length);
+            for (ProductPartition partition : partitions) {
+                slices.add(query.apply(partition));
+            }
+        } else {
+            slices = queryPool.invoke(new ScatterTask(partitions, query, 0, partitions.length));
+        }
+        return merge(slices, order);
+    }
+
+    private boolean scansSequentially(Catalog current) {
+        return current.partitions.length == 1 || current.size() < parallelThreshold;
+    }
+
+    private static int fill(ProductBuffer into, List<Product> products) {
+        into.reset();
+        into.addAll(products);
+        return into.size();
+    }
+
+    /**
+     * K-way merge of slices that are each sorted by the given order
+     */
+    static List<Product> merge(List<List<Product>> slices, Comparator<Product> order) {
+        int total = 0;
+        for (List<Product> slice : slices) {
+            total += slice.size();
+        }
+        List<Product> merged = new ArrayList<>(total);
+        int[] cursors = new int[slices.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, slices.size()),
+                (a, b) -> order.compare(slices.get(a).get(cursors[a]), slices.get(b).get(cursors[b])));
+        for (int i = 0; i < slices.size(); i++) {
+            if (!slices.get(i).isEmpty()) {
+                heads.add(i);
+            }
+        }
+        while (!heads.isEmpty()) {
+            int i = heads.poll();
+            List<Product> slice = slices.get(i);
+            merged.add(slice.get(cursors[i]++));
+            if (cursors[i] < slice.size()) {
+                heads.add(i);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Partitions with the indexes and intern tables over them
+     */
+    private final class Catalog {
+        final ProductPartition[] partitions = new ProductPartition[partitionCount];
+        // Resolves against this catalog, which may not be published yet
+        final TypeaheadIndex typeahead = new TypeaheadIndex(TYPEAHEAD_CACHE_SIZE, typeaheadScore,
+                id -> partitionFor(id).get(id));
+        final RelevanceIndex relevance = new RelevanceIndex();
+        final InternTable categories = new InternTable(INTERN_CATEGORIES);
+        final InternTable names = new InternTable(INTERN_NAMES);
+
+        Catalog() {
+            for (int i = 0; i < partitions.length; i++) {
+                partitions[i] = new ProductPartition();
+            }
+        }
+
+        ProductPartition partitionFor(int id) {
+            return partitions[partitionIndex(id, partitions.length)];
+        }
+
+        int size() {
+            int count = 0;
+            for (ProductPartition partition : partitions) {
+                count += partition.size();
+            }
+            return count;
+        }
+
+        void canonicalize(Product product) {
+            product.setCategory(categories.intern(product.getCategory()));
+            product.setName(names.intern(product.getName()));
+        }
+    }
+
+    /**
+     * One chunk of a bulk load, grouped by partition, with its index fragments
+     */
+    private static final class LoadedChunk {
+        final List<Product> products;
+        final List<List<Product>> byPartition;
+        int maxId;
+        TypeaheadIndex.Fragment typeahead;
+        RelevanceIndex.Fragment relevance;
+
+        LoadedChunk(List<Product> products, int partitionCount) {
+            this.products = products;
+            byPartition = new ArrayList<>(partitionCount);
+            for (int i = 0; i < partitionCount; i++) {
+                byPartition.add(new ArrayList<>());
+            }
+        }
+    }
+
+    /**
+     * Fork/join task that runs a query over a range of partitions
+     */
+    private static class ScatterTask extends RecursiveTask<List<List<Product>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final ProductPartition[] partitions;
+        private final Function<ProductPartition, List<Product>> query;
+        private final int from;
+        private final int to;
+
+        ScatterTask(ProductPartition[] partitions, Function<ProductPartition, List<Product>> query,
+                    int from, int to) {
+            this.partitions = partitions;
+            this.query = query;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<List<Product>> compute() {
+            if (to - from == 1) {
+                List<List<Product>> result = new ArrayList<>(1);
+                result.add(query.apply(partitions[from]));
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            ScatterTask left = new ScatterTask(partitions, query, from, mid);
+            left.fork();
+            List<List<Product>> result = new ScatterTask(partitions, query, mid, to).compute();
+            List<List<Product>> leftResult = left.join();
+            leftResult.addAll(result);
+            return leftResult;
+        }
     }
 }
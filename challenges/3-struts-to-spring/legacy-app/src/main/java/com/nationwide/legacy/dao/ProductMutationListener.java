@@ -0,0 +1,32 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+
+import java.util.List;
+
+/**
+ * Receives every mutation committed to ProductDAO
+ *
+ * Store and delete callbacks run while the owning partition is locked, so
+ * for any one product id they are delivered in the order the writes were
+ * applied. Implementations must be quick and must not call back into the
+ * DAO.
+ */
+public interface ProductMutationListener {
+
+    /**
+     * A product was added or replaced; the argument is a private copy
+     */
+    void productStored(Product product);
+
+    void productDeleted(int id);
+
+    /**
+     * The whole catalog was replaced (resetData, snapshot load, replicated
+     * snapshot) by one holding the given rows. Called after the new
+     * catalog is published and before any write to it is reported. The
+     * rows are the stored products, not copies: do not modify them. Their
+     * stock can still change, and each change is reported as a store.
+     */
+    void catalogReset(List<Product> products);
+}
@@ -0,0 +1,180 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One hash partition of the product store
+ *
+ * Each partition owns a slice of the id space, its own monitor and its
+ * own category index, so writes only contend with other writes to the same
+ * slice. Point lookups read the id table without locking. Query methods
+ * return their slice already sorted so ProductDAO can merge slices without
+ * re-sorting; the collect methods append to a ProductBuffer instead.
+ */
+class ProductPartition {
+
+    private final ProductTable products = new ProductTable();
+    private final Map<String, ProductTable> byCategory = new HashMap<>();
+
+    Product get(int id) {
+        return products.get(id);
+    }
+
+    synchronized Product put(Product product) {
+        Product previous = products.put(product);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(product);
+        return previous;
+    }
+
+    /**
+     * Replace an existing product; returns the old one or null if absent
+     */
+    synchronized Product replace(Product product) {
+        if (products.get(product.getId()) == null) {
+            return null;
+        }
+        return put(product);
+    }
+
+    synchronized Product remove(int id) {
+        Product removed = products.remove(id);
+        if (removed != null) {
+            unindex(removed);
+        }
+        return removed;
+    }
+
+    synchronized int size() {
+        return products.size();
+    }
+
+    synchronized List<Product> all(Comparator<Product> order) {
+        List<Product> slice = new ArrayList<>(products.size());
+        for (int i = 0; i < products.capacity(); i++) {
+            Product product = products.at(i);
+            if (product != null) {
+                slice.add(product);
+            }
+        }
+        slice.sort(order);
+        return slice;
+    }
+
+    /**
+     * Like all(), but sorts copies taken under the lock. Stock changes
+     * without the lock, so an order that reads it must see each value
+     * once: sorting live products could break the sort's contract.
+     */
+    synchronized List<Product> snapshot(Comparator<Product> order) {
+        List<Product> slice = new ArrayList<>(products.size());
+        for (int i = 0; i < products.capacity(); i++) {
+            Product product = products.at(i);
+            if (product != null) {
+                slice.add(new Product(product.getId(), product.getName(), product.getCategory(),
+                        product.getPrice(), product.getStock()));
+            }
+        }
+        slice.sort(order);
+        return slice;
+    }
+
+    synchronized List<Product> search(String lowerQuery, Comparator<Product> order) {
+        List<Product> slice = new ArrayList<>();
+        for (int i = 0; i < products.capacity(); i++) {
+            Product product = products.at(i);
+            if (product != null && nameContains(product, lowerQuery)) {
+                slice.add(product);
+            }
+        }
+        slice.sort(order);
+        return slice;
+    }
+
+    synchronized List<Product> byCategory(String category, Comparator<Product> order) {
+        ProductTable indexed = byCategory.get(category);
+        if (indexed == null) {
+            return new ArrayList<>();
+        }
+        List<Product> slice = new ArrayList<>(indexed.size());
+        for (int i = 0; i < indexed.capacity(); i++) {
+            Product product = indexed.at(i);
+            if (product != null) {
+                slice.add(product);
+            }
+        }
+        slice.sort(order);
+        return slice;
+    }
+
+    synchronized void collectAll(ProductBuffer into) {
+        collect(products, into);
+    }
+
+    synchronized void collectCategory(String category, ProductBuffer into) {
+        ProductTable indexed = byCategory.get(category);
+        if (indexed != null) {
+            collect(indexed, into);
+        }
+    }
+
+    synchronized void collectSearch(String lowerQuery, ProductBuffer into) {
+        for (int i = 0; i < products.capacity(); i++) {
+            Product product = products.at(i);
+            if (product != null && nameContains(product, lowerQuery)) {
+                into.add(product);
+            }
+        }
+    }
+
+    /**
+     * Whether the lower-cased name contains lowerQuery, compared char by
+     * char so that no lower-cased copy of the name is allocated
+     */
+    static boolean nameContains(Product product, String lowerQuery) {
+        String name = product.getName();
+        int last = name.length() - lowerQuery.length();
+        for (int start = 0; start <= last; start++) {
+            int k = 0;
+            while (k < lowerQuery.length()
+                    && Character.toLowerCase(name.charAt(start + k)) == lowerQuery.charAt(k)) {
+                k++;
+            }
+            if (k == lowerQuery.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void collect(ProductTable table, ProductBuffer into) {
+        for (int i = 0; i < table.capacity(); i++) {
+            Product product = table.at(i);
+            if (product != null) {
+                into.add(product);
+            }
+        }
+    }
+
+    private void index(Product product) {
+        byCategory.computeIfAbsent(product.getCategory(), c -> new ProductTable()).put(product);
+    }
+
+    private void unindex(Product product) {
+        ProductTable indexed = byCategory.get(product.getCategory());
+        if (indexed != null) {
+            indexed.remove(product.getId());
+            if (indexed.isEmpty()) {
+                byCategory.remove(product.getCategory());
+            }
+        }
+    }
+}
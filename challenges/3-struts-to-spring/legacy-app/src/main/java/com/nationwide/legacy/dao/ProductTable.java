@@ -0,0 +1,143 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Open-addressing hash table of products keyed by their id
+ *
+ * Slots hold the Product references themselves (the key is product.id),
+ * so a lookup neither boxes the id nor allocates. Writers must hold the
+ * owner's lock; readers need none, because slots are published through an
+ * AtomicReferenceArray and a resize swaps in a fully built array. A reader
+ * racing a delete and re-insert of the same id may miss it, as if it had
+ * read between the two.
+ *
+ * Iterate with capacity() and at(i) while holding the owner's lock.
+ */
+final class ProductTable {
+
+    private static final Product REMOVED = new Product();
+    private static final int MIN_CAPACITY = 8;
+
+    private volatile AtomicReferenceArray<Product> slots = new AtomicReferenceArray<>(MIN_CAPACITY);
+    private int size;
+    private int used;
+
+    Product get(int id) {
+        AtomicReferenceArray<Product> table = slots;
+        int mask = table.length() - 1;
+        for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+            Product product = table.get(i);
+            if (product == null) {
+                return null;
+            }
+            if (product != REMOVED && product.id == id) {
+                return product;
+            }
+        }
+    }
+
+    /**
+     * Insert or replace by id; returns the product that was replaced
+     */
+    Product put(Product product) {
+        AtomicReferenceArray<Product> table = slots;
+        int mask = table.length() - 1;
+        int free = -1;
+        int i = slot(product.id, mask);
+        for (; ; i = (i + 1) & mask) {
+            Product current = table.get(i);
+            if (current == null) {
+                break;
+            }
+            if (current == REMOVED) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (current.id == product.id) {
+                table.set(i, product);
+                return current;
+            }
+        }
+        if (free >= 0) {
+            table.set(free, product);
+        } else {
+            table.set(i, product);
+            used++;
+        }
+        size++;
+        if (used * 2 > table.length()) {
+            rehash(size * 4 > table.length() ? table.length() * 2 : table.length());
+        }
+        return null;
+    }
+
+    Product remove(int id) {
+        AtomicReferenceArray<Product> table = slots;
+        int mask = table.length() - 1;
+        for (int i = slot(id, mask); ; i = (i + 1) & mask) {
+            Product product = table.get(i);
+            if (product == null) {
+                return null;
+            }
+            if (product != REMOVED && product.id == id) {
+                table.set(i, REMOVED);
+                size--;
+                if (size * 8 < table.length() && table.length() > MIN_CAPACITY) {
+                    rehash(table.length() / 2);
+                }
+                return product;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * The product in slot i, or null if the slot is empty
+     */
+    Product at(int i) {
+        Product product = slots.get(i);
+        return product == REMOVED ? null : product;
+    }
+
+    private void rehash(int capacity) {
+        AtomicReferenceArray<Product> old = slots;
+        AtomicReferenceArray<Product> table = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.length(); j++) {
+            Product product = old.get(j);
+            if (product != null && product != REMOVED) {
+                int i = slot(product.id, mask);
+                while (table.get(i) != null) {
+                    i = (i + 1) & mask;
+                }
+                table.set(i, product);
+            }
+        }
+        used = size;
+        slots = table;
+    }
+
+    // A different mix from ProductDAO's partition hash: ids in one partition
+    // share the low bits of that hash and would cluster
+    private static int slot(int id, int mask) {
+        int h = id ^ (id >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,30 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.StockReservation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes ProductDAO writes on another node instead of locally
+ *
+ * Installed on replication followers so that writes they receive are
+ * applied by the leader and come back through the replication stream.
+ */
+public interface ProductWriteForwarder {
+
+    Product addProduct(Product product);
+
+    Product updateProduct(Product product);
+
+    boolean deleteProduct(int id);
+
+    List<Product> adjustStock(Map<Integer, Integer> deltas) throws InsufficientStockException;
+
+    StockReservation reserveStock(Map<Integer, Integer> lines, long ttlMillis) throws InsufficientStockException;
+
+    boolean confirmReservation(long reservationId);
+
+    boolean cancelReservation(long reservationId);
+}
@@ -0,0 +1,765 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over product names and categories for ranked search
+ *
+ * Each term has a posting list of product ids in ascending order with the
+ * term's weighted frequency in that product (name words count 1, category
+ * words CATEGORY_WEIGHT). Products are scored with BM25 over the combined
+ * fields. Deleting a product only marks its postings dead; a list is
+ * compacted once more than half of it is dead.
+ *
+ * search() returns the top K ids using WAND: every list carries an upper
+ * bound on the score it can contribute, and products whose bounds cannot
+ * lift them above the current K-th best score are skipped without being
+ * scored, so the work depends on K and the query rather than on how many
+ * products match. With fuzzy matching each query word also matches
+ * indexed words one edit away (insert, delete, substitute or transpose a
+ * character), at FUZZY_WEIGHT of the exact weight. Only the first
+ * MAX_FUZZY_TOKENS query words of MIN_FUZZY_LENGTH to MAX_FUZZY_LENGTH
+ * characters are expanded; the number of edits grows with the word length
+ * times the alphabet, so longer words only match exactly.
+ *
+ * Searches share a read lock; writes take the write lock and keep the
+ * block bounds current, so a search never modifies the index. putAll()
+ * appends to the posting lists and sorts each list it touched once at the
+ * end instead of inserting every id in place. A new catalog tokenizes its
+ * chunks into fragments concurrently, without the lock, and merges them
+ * with one putAll pass, so each list is sorted once for the whole load.
+ */
+class RelevanceIndex {
+
+    static final float CATEGORY_WEIGHT = 0.5f;
+    static final double FUZZY_WEIGHT = 0.5;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    static final int MIN_FUZZY_LENGTH = 3;
+    static final int MAX_FUZZY_LENGTH = 32;
+    static final int MAX_FUZZY_TOKENS = 8;
+
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private static final Comparator<Hit> BEST_FIRST = (a, b) -> {
+        int byScore = Double.compare(b.score, a.score);
+        return byScore != 0 ? byScore : Integer.compare(a.id, b.id);
+    };
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    // Lists putAll() appended to out of order, sorted when it finishes
+    private final List<PostingList> appended = new ArrayList<>();
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    private final boolean[] alphabet = new boolean[Character.MAX_VALUE + 1];
+    private char[] alphabetChars = new char[0];
+    private double totalLength;
+    private double boundAvg;
+
+    void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            store(product, false);
+            refreshBounds();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void putAll(List<Product> products) {
+        lock.writeLock().lock();
+        try {
+            for (Product product : products) {
+                store(product, true);
+            }
+            finishBulk();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tokenized products of one chunk of a bulk load; takes no lock and
+     * does not change the index
+     */
+    Fragment fragment(List<Product> products) {
+        Fragment fragment = new Fragment(products.size());
+        Map<String, String> words = new HashMap<>();
+        for (Product product : products) {
+            Doc doc = new Doc(product.getId(), product.getName(), product.getCategory());
+            // One String per distinct word of the chunk instead of one per doc
+            for (int i = 0; i < doc.terms.length; i++) {
+                doc.terms[i] = words.computeIfAbsent(doc.terms[i], t -> t);
+            }
+            fragment.docs.add(doc);
+        }
+        return fragment;
+    }
+
+    /**
+     * putAll() for fragments, in order: a product given twice keeps its
+     * text from the later fragment
+     */
+    void merge(List<Fragment> fragments) {
+        lock.writeLock().lock();
+        try {
+            for (Fragment fragment : fragments) {
+                for (Doc doc : fragment.docs) {
+                    store(doc, true);
+                }
+            }
+            finishBulk();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            Doc old = docs.get(id);
+            if (old != null) {
+                unlink(old);
+                refreshBounds();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the limit best-scoring products for the query, best first
+     */
+    List<Integer> search(String query, int limit, boolean fuzzy) {
+        lock.readLock().lock();
+        try {
+            return rank(query, limit, fuzzy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Called with the write lock held
+    private void store(Product product, boolean bulk) {
+        Doc old = docs.get(product.getId());
+        if (old != null && Objects.equals(old.name, product.getName())
+                && Objects.equals(old.category, product.getCategory())) {
+            return;
+        }
+        store(new Doc(product.getId(), product.getName(), product.getCategory()), bulk);
+    }
+
+    // Called with the write lock held
+    private void store(Doc doc, boolean bulk) {
+        Doc old = docs.get(doc.id);
+        if (old != null) {
+            unlink(old);
+        }
+        docs.put(doc.id, doc);
+        totalLength += doc.length;
+        for (int i = 0; i < doc.terms.length; i++) {
+            PostingList list = postings.get(doc.terms[i]);
+            if (list == null) {
+                list = new PostingList(boundAvg);
+                postings.put(doc.terms[i], list);
+                learnAlphabet(doc.terms[i]);
+            }
+            if (!bulk) {
+                list.add(doc.id, doc.freqs[i], doc.length);
+            } else if (list.append(doc.id, doc.freqs[i], doc.length)) {
+                appended.add(list);
+            }
+        }
+    }
+
+    // Called with the write lock held, after a bulk store
+    private void finishBulk() {
+        for (PostingList list : appended) {
+            list.finishAppends();
+        }
+        appended.clear();
+        refreshBounds();
+    }
+
+    // Called with the write lock held, after every write
+    private void refreshBounds() {
+        if (docs.isEmpty()) {
+            return;
+        }
+        double avgLength = totalLength / docs.size();
+        if (boundAvg == 0 || avgLength > boundAvg || avgLength < boundAvg / 1.5) {
+            // Contributions only grow with the average length, so block maxima
+            // computed a little above it stay valid bounds while it drifts
+            boundAvg = avgLength * 1.05;
+            for (PostingList list : postings.values()) {
+                list.useBlockAvg(boundAvg);
+            }
+        }
+    }
+
+    // Called with the read lock held
+    private List<Integer> rank(String query, int limit, boolean fuzzy) {
+        List<Integer> ids = new ArrayList<>();
+        if (limit <= 0 || docs.isEmpty()) {
+            return ids;
+        }
+        double avgLength = totalLength / docs.size();
+        List<Cursor> cursors = new ArrayList<>();
+        for (Map.Entry<String, Double> term : queryTerms(query, fuzzy).entrySet()) {
+            PostingList list = postings.get(term.getKey());
+            if (list != null && list.live() > 0) {
+                Cursor cursor = new Cursor(list, term.getValue() * idf(list.live()), avgLength, cursors.size());
+                if (cursor.next()) {
+                    cursors.add(cursor);
+                }
+            }
+        }
+
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+        double threshold = 0;
+        // Ties in query-term order, so equal products sum their scores identically
+        Comparator<Cursor> byDoc = Comparator.<Cursor>comparingInt(c -> c.doc).thenComparingInt(c -> c.term);
+        while (!cursors.isEmpty()) {
+            cursors.sort(byDoc);
+
+            // Pivot: first cursor at which the summed bounds could beat the threshold
+            int pivot = -1;
+            double bound = 0;
+            for (int i = 0; i < cursors.size(); i++) {
+                bound += cursors.get(i).upperBound;
+                if (best.size() < limit || bound > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                break;
+            }
+            int pivotDoc = cursors.get(pivot).doc;
+
+            if (cursors.get(0).doc == pivotDoc) {
+                int matched = 1;
+                while (matched < cursors.size() && cursors.get(matched).doc == pivotDoc) {
+                    matched++;
+                }
+                if (best.size() == limit && skipBlocks(cursors, matched, threshold)) {
+                    continue;
+                }
+                double score = 0;
+                for (int i = 0; i < matched; i++) {
+                    score += cursors.get(i).score(avgLength);
+                }
+                if (best.size() < limit || score > threshold) {
+                    best.add(new Hit(pivotDoc, score));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                    if (best.size() == limit) {
+                        threshold = best.peek().score;
+                    }
+                }
+                advancePast(cursors, pivotDoc);
+            } else {
+                // Nothing before the pivot can reach the threshold; skip ahead to it
+                for (int i = 0; i < pivot; i++) {
+                    if (!cursors.get(i).skipTo(pivotDoc)) {
+                        cursors.get(i).doc = Integer.MAX_VALUE;
+                    }
+                }
+                cursors.removeIf(c -> c.doc == Integer.MAX_VALUE);
+            }
+        }
+
+        Hit[] sorted = best.toArray(new Hit[0]);
+        Arrays.sort(sorted, BEST_FIRST);
+        for (Hit hit : sorted) {
+            ids.add(hit.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Block-max check for the matched cursors 0..matched-1. Until the end of
+     * the nearest of their current blocks (or the next other cursor's
+     * product) only these lists can match, so if their block bounds cannot
+     * beat the threshold all of those products are skipped.
+     */
+    private static boolean skipBlocks(List<Cursor> cursors, int matched, double threshold) {
+        double bound = 0;
+        int target = matched < cursors.size() ? cursors.get(matched).doc : Integer.MAX_VALUE;
+        for (int i = 0; i < matched; i++) {
+            Cursor cursor = cursors.get(i);
+            bound += cursor.blockBound();
+            int blockEnd = cursor.blockLastId();
+            if (blockEnd < Integer.MAX_VALUE) {
+                target = Math.min(target, blockEnd + 1);
+            }
+        }
+        if (bound > threshold) {
+            return false;
+        }
+        for (int i = matched - 1; i >= 0; i--) {
+            if (!cursors.get(i).skipTo(target)) {
+                cursors.remove(i);
+            }
+        }
+        return true;
+    }
+
+    private static void advancePast(List<Cursor> cursors, int doc) {
+        for (int i = cursors.size() - 1; i >= 0; i--) {
+            Cursor cursor = cursors.get(i);
+            if (cursor.doc == doc && !cursor.next()) {
+                cursors.remove(i);
+            }
+        }
+    }
+
+    private double idf(int documentFrequency) {
+        return Math.log(1 + (docs.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    // Query words (deduplicated) and, with fuzzy matching, indexed words one
+    // edit away; each maps to its query weight
+    private Map<String, Double> queryTerms(String query, boolean fuzzy) {
+        Map<String, Double> terms = new LinkedHashMap<>();
+        for (String token : TextTokenizer.tokenize(query)) {
+            terms.put(token, 1.0);
+        }
+        if (fuzzy) {
+            int expanded = 0;
+            for (String token : new ArrayList<>(terms.keySet())) {
+                if (token.length() >= MIN_FUZZY_LENGTH && token.length() <= MAX_FUZZY_LENGTH
+                        && expanded++ < MAX_FUZZY_TOKENS) {
+                    for (String variant : editsOf(token)) {
+                        if (postings.containsKey(variant)) {
+                            terms.putIfAbsent(variant, FUZZY_WEIGHT);
+                        }
+                    }
+                }
+            }
+        }
+        return terms;
+    }
+
+    private List<String> editsOf(String term) {
+        List<String> edits = new ArrayList<>();
+        StringBuilder sb = new StringBuilder(term.length() + 1);
+        for (int i = 0; i <= term.length(); i++) {
+            if (i < term.length()) {
+                // delete
+                edits.add(sb.append(term, 0, i).append(term, i + 1, term.length()).toString());
+                sb.setLength(0);
+            }
+            if (i + 1 < term.length()) {
+                // transpose
+                edits.add(sb.append(term, 0, i).append(term.charAt(i + 1)).append(term.charAt(i))
+                        .append(term, i + 2, term.length()).toString());
+                sb.setLength(0);
+            }
+            for (char c : alphabetChars) {
+                if (i < term.length() && c != term.charAt(i)) {
+                    // substitute
+                    edits.add(sb.append(term, 0, i).append(c).append(term, i + 1, term.length()).toString());
+                    sb.setLength(0);
+                }
+                // insert
+                edits.add(sb.append(term, 0, i).append(c).append(term, i, term.length()).toString());
+                sb.setLength(0);
+            }
+        }
+        return edits;
+    }
+
+    private void learnAlphabet(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (!alphabet[c]) {
+                alphabet[c] = true;
+                alphabetChars = Arrays.copyOf(alphabetChars, alphabetChars.length + 1);
+                alphabetChars[alphabetChars.length - 1] = c;
+            }
+        }
+    }
+
+    private void unlink(Doc doc) {
+        docs.remove(doc.id);
+        totalLength -= doc.length;
+        for (String term : doc.terms) {
+            PostingList list = postings.get(term);
+            list.remove(doc.id);
+            if (list.live() == 0) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * One chunk's products, tokenized
+     */
+    static final class Fragment {
+        private final List<Doc> docs;
+
+        private Fragment(int size) {
+            docs = new ArrayList<>(size);
+        }
+    }
+
+    private static final class Doc {
+        final int id;
+        final String name;
+        final String category;
+        final String[] terms;
+        final float[] freqs;
+        final int length;
+
+        Doc(int id, String name, String category) {
+            this.id = id;
+            this.name = name;
+            this.category = category;
+            Map<String, Float> weighted = new LinkedHashMap<>();
+            float total = 0;
+            for (String token : TextTokenizer.tokenize(name)) {
+                weighted.merge(token, 1f, Float::sum);
+                total += 1f;
+            }
+            for (String token : TextTokenizer.tokenize(category)) {
+                weighted.merge(token, CATEGORY_WEIGHT, Float::sum);
+                total += CATEGORY_WEIGHT;
+            }
+            terms = weighted.keySet().toArray(new String[0]);
+            freqs = new float[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                freqs[i] = weighted.get(terms[i]);
+            }
+            length = Math.max(1, Math.round(total));
+        }
+    }
+
+    private static double contribution(double tf, int length, double avgLength) {
+        return tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+    }
+
+    /**
+     * Ids in ascending order with their term frequencies and product
+     * lengths; a frequency of 0 marks a deleted entry
+     *
+     * Entries are grouped in blocks of BLOCK_SIZE positions, each with the
+     * highest contribution() in it for block-max skipping. Block maxima are
+     * computed for the index's boundAvg and rebuilt when it changes.
+     * append() adds entries past the sorted prefix without placing them;
+     * finishAppends() sorts them in and rebuilds the blocks once.
+     * For the WAND bound the list also counts its live entries per distinct
+     * (frequency, length) shape. Product text is short, so a list has few
+     * shapes, and the best contribution() among them is the exact maximum
+     * for whatever the current average length is.
+     */
+    private static final class PostingList {
+        int[] ids = new int[4];
+        float[] freqs = new float[4];
+        int[] lengths = new int[4];
+        int size;
+        int sortedSize;
+        int dead;
+        double[] blockMax = new double[1];
+        double blockAvg;
+        long[] shapes = new long[1];
+        int[] shapeCounts = new int[1];
+        int shapeCount;
+
+        PostingList(double blockAvg) {
+            this.blockAvg = blockAvg;
+        }
+
+        int live() {
+            return size - dead;
+        }
+
+        double maxContribution(double avgLength) {
+            double max = 0;
+            for (int i = 0; i < shapeCount; i++) {
+                float freq = Float.intBitsToFloat((int) (shapes[i] >>> 32));
+                max = Math.max(max, contribution(freq, (int) shapes[i], avgLength));
+            }
+            return max;
+        }
+
+        void add(int id, float freq, int length) {
+            finishAppends();
+            countShape(freq, length, 1);
+            if (size == 0 || ids[size - 1] < id) {
+                grow();
+                set(size++, id, freq, length);
+                sortedSize = size;
+                noteBlock(size - 1, freq, length);
+                return;
+            }
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) {
+                // Re-adding a deleted entry
+                if (freqs[i] == 0) {
+                    dead--;
+                }
+                set(i, id, freq, length);
+                noteBlock(i, freq, length);
+                return;
+            }
+            int insertAt = -i - 1;
+            grow();
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            System.arraycopy(freqs, insertAt, freqs, insertAt + 1, size - insertAt);
+            System.arraycopy(lengths, insertAt, lengths, insertAt + 1, size - insertAt);
+            set(insertAt, id, freq, length);
+            size++;
+            sortedSize = size;
+            // Each later block lost its last entry to the next block and took
+            // the previous block's last one; covering that entry keeps the
+            // block maxima valid bounds without rescanning the blocks
+            for (int block = (insertAt >> BLOCK_SHIFT) + 1; block << BLOCK_SHIFT < size; block++) {
+                int first = block << BLOCK_SHIFT;
+                noteBlock(first, freqs[first], lengths[first]);
+            }
+            noteBlock(insertAt, freq, length);
+        }
+
+        /**
+         * Add an entry at the end, in any id order; returns true if this
+         * leaves the list unsorted for the first time since finishAppends()
+         */
+        boolean append(int id, float freq, int length) {
+            if (sortedSize == size && (size == 0 || ids[size - 1] < id)) {
+                add(id, freq, length);
+                return false;
+            }
+            boolean first = sortedSize == size;
+            countShape(freq, length, 1);
+            grow();
+            set(size++, id, freq, length);
+            return first;
+        }
+
+        /**
+         * Merge the appended entries into the sorted prefix, dropping
+         * deleted entries, and rebuild the blocks from the first change
+         */
+        void finishAppends() {
+            if (sortedSize == size) {
+                return;
+            }
+            long[] tail = new long[size - sortedSize];
+            for (int i = 0; i < tail.length; i++) {
+                tail[i] = (long) ids[sortedSize + i] << 32 | (sortedSize + i);
+            }
+            Arrays.sort(tail);
+
+            int[] mergedIds = new int[ids.length];
+            float[] mergedFreqs = new float[ids.length];
+            int[] mergedLengths = new int[ids.length];
+            int kept = 0;
+            int firstChange = -1;
+            int i = 0;
+            int t = 0;
+            while (i < sortedSize || t < tail.length) {
+                int from;
+                if (t == tail.length || (i < sortedSize && ids[i] <= (int) (tail[t] >> 32))) {
+                    from = i++;
+                } else {
+                    from = (int) tail[t++];
+                    if (firstChange < 0) {
+                        firstChange = kept;
+                    }
+                }
+                if (freqs[from] == 0) {
+                    if (firstChange < 0) {
+                        firstChange = kept;
+                    }
+                    continue;
+                }
+                mergedIds[kept] = ids[from];
+                mergedFreqs[kept] = freqs[from];
+                mergedLengths[kept] = lengths[from];
+                kept++;
+            }
+            ids = mergedIds;
+            freqs = mergedFreqs;
+            lengths = mergedLengths;
+            size = kept;
+            sortedSize = kept;
+            dead = 0;
+            rebuildBlocks(firstChange >> BLOCK_SHIFT);
+        }
+
+        void useBlockAvg(double avgLength) {
+            blockAvg = avgLength;
+            rebuildBlocks(0);
+        }
+
+        int blockLastId(int block) {
+            return ids[Math.min(size, (block + 1) << BLOCK_SHIFT) - 1];
+        }
+
+        void remove(int id) {
+            finishAppends();
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0 && freqs[i] != 0) {
+                countShape(freqs[i], lengths[i], -1);
+                freqs[i] = 0;
+                dead++;
+                if (dead > 16 && dead * 2 > size) {
+                    compact();
+                }
+            }
+        }
+
+        private void countShape(float freq, int length, int delta) {
+            long shape = (long) Float.floatToIntBits(freq) << 32 | (length & 0xFFFFFFFFL);
+            for (int i = 0; i < shapeCount; i++) {
+                if (shapes[i] == shape) {
+                    shapeCounts[i] += delta;
+                    if (shapeCounts[i] == 0) {
+                        shapes[i] = shapes[--shapeCount];
+                        shapeCounts[i] = shapeCounts[shapeCount];
+                    }
+                    return;
+                }
+            }
+            if (shapeCount == shapes.length) {
+                shapes = Arrays.copyOf(shapes, shapeCount * 2);
+                shapeCounts = Arrays.copyOf(shapeCounts, shapeCount * 2);
+            }
+            shapes[shapeCount] = shape;
+            shapeCounts[shapeCount++] = delta;
+        }
+
+        private void set(int i, int id, float freq, int length) {
+            ids[i] = id;
+            freqs[i] = freq;
+            lengths[i] = length;
+        }
+
+        private void grow() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            int blocks = (ids.length + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+            if (blocks > blockMax.length) {
+                blockMax = Arrays.copyOf(blockMax, blocks);
+            }
+        }
+
+        // Deleted entries stay in their block's maximum: still a valid bound
+        private void noteBlock(int position, float freq, int length) {
+            int block = position >> BLOCK_SHIFT;
+            blockMax[block] = Math.max(blockMax[block], contribution(freq, length, blockAvg));
+        }
+
+        private void rebuildBlocks(int fromBlock) {
+            Arrays.fill(blockMax, fromBlock, blockMax.length, 0);
+            for (int i = fromBlock << BLOCK_SHIFT; i < size; i++) {
+                if (freqs[i] != 0) {
+                    noteBlock(i, freqs[i], lengths[i]);
+                }
+            }
+        }
+
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (freqs[i] != 0) {
+                    set(kept++, ids[i], freqs[i], lengths[i]);
+                }
+            }
+            size = kept;
+            sortedSize = kept;
+            dead = 0;
+            rebuildBlocks(0);
+        }
+    }
+
+    /**
+     * Position in one posting list during a search
+     */
+    private static final class Cursor {
+        final PostingList list;
+        final double weight;
+        final double upperBound;
+        final int term;
+        int position = -1;
+        int doc;
+
+        Cursor(PostingList list, double weight, double avgLength, int term) {
+            this.list = list;
+            this.weight = weight;
+            this.term = term;
+            this.upperBound = weight * list.maxContribution(avgLength);
+        }
+
+        double blockBound() {
+            return weight * list.blockMax[position >> BLOCK_SHIFT];
+        }
+
+        int blockLastId() {
+            return list.blockLastId(position >> BLOCK_SHIFT);
+        }
+
+        double score(double avgLength) {
+            return weight * contribution(list.freqs[position], list.lengths[position], avgLength);
+        }
+
+        boolean next() {
+            while (++position < list.size) {
+                if (list.freqs[position] != 0) {
+                    doc = list.ids[position];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Move to the first live entry with id >= target (galloping search)
+         */
+        boolean skipTo(int target) {
+            if (doc >= target) {
+                return true;
+            }
+            int step = 1;
+            int low = position;
+            int high = position + 1;
+            while (high < list.size && list.ids[high] < target) {
+                low = high;
+                step <<= 1;
+                high = position + step;
+            }
+            high = Math.min(high, list.size);
+            int i = Arrays.binarySearch(list.ids, low + 1, high, target);
+            position = (i >= 0 ? i : -i - 1) - 1;
+            return next();
+        }
+    }
+
+    private static final class Hit {
+        final int id;
+        final double score;
+
+        Hit(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.StockReservation;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open stock reservations of a ProductDAO
+ *
+ * Reserving decrements stock immediately; confirming just forgets the
+ * reservation, cancelling (or expiring) puts the units back. Whichever of
+ * confirm, cancel and the expiry sweep removes a reservation from the map
+ * first decides its outcome, so each one is settled exactly once.
+ */
+class StockReservations {
+
+    private static final long SWEEP_MILLIS = 1000;
+
+    private final ProductDAO dao;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<Long, StockReservation> open = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+    private boolean stopped;
+
+    StockReservations(ProductDAO dao) {
+        this.dao = dao;
+    }
+
+    StockReservation reserve(Map<Integer, Integer> lines, long ttlMillis) throws InsufficientStockException {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Reservation TTL must be positive");
+        }
+        Map<Integer, Integer> deltas = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+            if (line.getValue() <= 0) {
+                throw new IllegalArgumentException("Reserved quantity must be positive: " + line);
+            }
+            deltas.put(line.getKey(), -line.getValue());
+        }
+        if (dao.applyDeltas(deltas) == null) {
+            return null;
+        }
+        StockReservation reservation = new StockReservation(nextId.getAndIncrement(), lines,
+                System.currentTimeMillis() + ttlMillis);
+        open.put(reservation.getId(), reservation);
+        startSweeper();
+        return reservation;
+    }
+
+    boolean confirm(long id) {
+        StockReservation reservation = open.remove(id);
+        if (reservation == null) {
+            return false;
+        }
+        if (reservation.isExpired(System.currentTimeMillis())) {
+            release(reservation);
+            return false;
+        }
+        return true;
+    }
+
+    boolean cancel(long id) {
+        StockReservation reservation = open.remove(id);
+        if (reservation == null) {
+            return false;
+        }
+        release(reservation);
+        return true;
+    }
+
+    /**
+     * Forget open reservations without returning their units (catalog reset)
+     */
+    void clear() {
+        open.clear();
+    }
+
+    private void releaseExpired() {
+        long now = System.currentTimeMillis();
+        for (StockReservation reservation : open.values()) {
+            if (reservation.isExpired(now) && open.remove(reservation.getId(), reservation)) {
+                release(reservation);
+            }
+        }
+    }
+
+    private void release(StockReservation reservation) {
+        // Reserving applied -quantity per line; rolling that back restocks
+        List<Map.Entry<Integer, Integer>> lines = new ArrayList<>(reservation.getLines().size());
+        for (Map.Entry<Integer, Integer> line : reservation.getLines().entrySet()) {
+            lines.add(new AbstractMap.SimpleEntry<>(line.getKey(), -line.getValue()));
+        }
+        dao.rollback(lines);
+    }
+
+    /**
+     * Stop the expiry sweep for good; open reservations stay open
+     */
+    synchronized void shutdown() {
+        stopped = true;
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private synchronized void startSweeper() {
+        if (sweeper != null || stopped) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stock-reservation-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::releaseExpired, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
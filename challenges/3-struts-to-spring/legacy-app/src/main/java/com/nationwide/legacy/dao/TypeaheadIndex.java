@@ -0,0 +1,612 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Prefix index over the words of product names, for typeahead
+ *
+ * A character trie whose children are kept in a sorted array rather than
+ * a map. Every node caches the best cacheSize products of its subtree
+ * (highest score first, then lowest id), so a typeahead request walks the
+ * prefix and copies the cache; requests are capped at cacheSize results.
+ * Whole-word postings are kept best first, so a multi-word input scans the
+ * postings of its rarest earlier word and stops at the first limit
+ * matches, unless the last word's subtree holds fewer entries. Either way
+ * it examines at most SCAN_BUDGET postings, so a pair of very common
+ * words can return fewer matches than exist.
+ *
+ * Lookups take no lock. Writers hold the index lock and replace a node's
+ * children and cache arrays instead of modifying them, publishing through
+ * volatile fields; postings are concurrent sets. Adding a product offers
+ * it to the caches along each of its words' paths. Removing one (or
+ * changing its score) marks the caches that held it dirty, and the write
+ * rebuilds them from their children and postings before it releases the
+ * lock. Stock adjustments only record the id with scoreChanged() (no
+ * lock); the next write, or the next lookup that finds the lock free,
+ * re-scores it.
+ *
+ * A new catalog is filled with fragment() and merge(): fragments group one
+ * chunk's words with their docs and can be built concurrently without the
+ * lock; merge() links each word of a fragment once and builds every cache
+ * in one pass at the end instead of offering each doc along its paths.
+ */
+class TypeaheadIndex {
+
+    static final int SCAN_BUDGET = 4096;
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Doc[] NO_DOCS = new Doc[0];
+
+    private static final Comparator<Doc> BEST_FIRST = (a, b) -> {
+        int byScore = Double.compare(b.score, a.score);
+        return byScore != 0 ? byScore : Integer.compare(a.id, b.id);
+    };
+
+    private final int cacheSize;
+    private final ToDoubleFunction<Product> scoreFunction;
+    private final IntFunction<Product> resolver;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    private final Set<Integer> rescore = ConcurrentHashMap.newKeySet();
+    // Caches marked dirty by the current write
+    private final List<Node> dirty = new ArrayList<>();
+    private final Node root = new Node('\0');
+
+    TypeaheadIndex(int cacheSize, ToDoubleFunction<Product> scoreFunction, IntFunction<Product> resolver) {
+        this.cacheSize = cacheSize;
+        this.scoreFunction = scoreFunction;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Index a new product or re-index a changed one
+     */
+    void put(Product product) {
+        lock.lock();
+        try {
+            store(product);
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Words and docs of one chunk of a bulk load; takes no lock and does
+     * not change the index
+     */
+    Fragment fragment(List<Product> products) {
+        Doc[] docs = new Doc[products.size()];
+        Map<String, Word> byWord = new HashMap<>();
+        int postingCount = 0;
+        for (int i = 0; i < docs.length; i++) {
+            Product product = products.get(i);
+            docs[i] = new Doc(product.getId(), product.getName(), scoreFunction.applyAsDouble(product),
+                    distinctTerms(product.getName()));
+            String[] terms = docs[i].terms;
+            for (int t = 0; t < terms.length; t++) {
+                Word word = byWord.computeIfAbsent(terms[t], Word::new);
+                // One String per distinct word of the chunk instead of one per doc
+                terms[t] = word.word;
+                word.docs.add(docs[i]);
+            }
+            postingCount += terms.length;
+        }
+        String[] words = byWord.keySet().toArray(new String[0]);
+        Arrays.sort(words);
+        Fragment fragment = new Fragment(docs, postingCount);
+        int at = 0;
+        for (String word : words) {
+            List<Doc> postings = byWord.get(word).docs;
+            postings.sort(BEST_FIRST);
+            for (Doc doc : postings) {
+                fragment.words[at] = word;
+                fragment.postings[at++] = doc;
+            }
+        }
+        return fragment;
+    }
+
+    /**
+     * Fill an empty index from fragments; a product given twice keeps its
+     * doc from the later fragment. Meant for an index no lookup can reach
+     * yet: the caches only become valid when it returns.
+     */
+    void merge(List<Fragment> fragments) {
+        lock.lock();
+        try {
+            if (!docs.isEmpty()) {
+                throw new IllegalStateException("merge() fills an empty index");
+            }
+            for (Fragment fragment : fragments) {
+                for (Doc doc : fragment.docs) {
+                    docs.put(doc.id, doc);
+                }
+            }
+            List<Node> terminals = new ArrayList<>();
+            for (Fragment fragment : fragments) {
+                link(fragment, terminals);
+            }
+            for (Node terminal : terminals) {
+                // Runs from several fragments, each best first
+                terminal.pending.sort(BEST_FIRST);
+                NavigableSet<Doc> postings = new ConcurrentSkipListSet<>(BEST_FIRST);
+                postings.addAll(terminal.pending);
+                terminal.postings = postings;
+                terminal.postingCount = postings.size();
+                terminal.pending = null;
+            }
+            root.dirty = true;
+            clean(root);
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void remove(int id) {
+        lock.lock();
+        try {
+            delete(id);
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Note that a product's score inputs changed; safe to call without
+     * holding any lock
+     */
+    void scoreChanged(int id) {
+        rescore.add(id);
+    }
+
+    /**
+     * Ids of the best products (at most cacheSize) having a word that
+     * starts with the last word of the input. Earlier words of the input
+     * must match whole words of the name.
+     */
+    List<Integer> lookup(String input, int limit) {
+        if (!rescore.isEmpty() && lock.tryLock()) {
+            try {
+                publish();
+            } finally {
+                lock.unlock();
+            }
+        }
+        List<String> tokens = TextTokenizer.tokenize(input);
+        List<Integer> ids = new ArrayList<>();
+        limit = Math.min(limit, cacheSize);
+        if (tokens.isEmpty() || limit <= 0) {
+            return ids;
+        }
+        String last = tokens.get(tokens.size() - 1);
+        Node node = find(last);
+        if (node == null) {
+            return ids;
+        }
+
+        if (tokens.size() == 1) {
+            Doc[] top = clean(node);
+            for (int i = 0; i < top.length && i < limit; i++) {
+                ids.add(top[i].id);
+            }
+            return ids;
+        }
+
+        Set<String> required = new HashSet<>(tokens.subList(0, tokens.size() - 1));
+        Node rarest = null;
+        NavigableSet<Doc> rarestPostings = null;
+        for (String word : required) {
+            Node wordNode = find(word);
+            NavigableSet<Doc> postings = wordNode == null ? null : wordNode.postings;
+            if (postings == null) {
+                return ids;
+            }
+            if (rarest == null || wordNode.postingCount < rarest.postingCount) {
+                rarest = wordNode;
+                rarestPostings = postings;
+            }
+        }
+        // A concurrent re-index can show one id twice (old and new score)
+        Set<Integer> seen = new HashSet<>();
+        int budget = SCAN_BUDGET;
+        if (rarest.postingCount <= node.entries) {
+            for (Doc doc : rarestPostings) {
+                if (--budget < 0) {
+                    break;
+                }
+                if (doc.hasTerms(required) && doc.hasPrefix(last) && seen.add(doc.id)) {
+                    ids.add(doc.id);
+                    if (ids.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            return ids;
+        }
+
+        // The last word's subtree is the smaller side
+        PriorityQueue<Doc> best = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+        collect(node, required, limit, best, seen, new int[] {budget});
+        Doc[] sorted = best.toArray(NO_DOCS);
+        Arrays.sort(sorted, BEST_FIRST);
+        for (Doc doc : sorted) {
+            ids.add(doc.id);
+        }
+        return ids;
+    }
+
+    // Called with the lock held
+    private void store(Product product) {
+        double score = scoreFunction.applyAsDouble(product);
+        Doc old = docs.get(product.getId());
+        if (old != null && old.score == score && Objects.equals(old.name, product.getName())) {
+            return;
+        }
+        if (old != null) {
+            docs.remove(old.id);
+            unlink(old);
+        }
+        Doc doc = new Doc(product.getId(), product.getName(), score, distinctTerms(product.getName()));
+        docs.put(doc.id, doc);
+        link(doc);
+    }
+
+    // Called with the lock held
+    private void delete(int id) {
+        Doc old = docs.remove(id);
+        if (old != null) {
+            unlink(old);
+        }
+    }
+
+    // Called with the lock held: apply pending re-scores and rebuild the
+    // caches this write left dirty, so lookups only ever see clean ones
+    private void publish() {
+        for (Integer id : rescore) {
+            rescore.remove(id);
+            Product product = resolver.apply(id);
+            if (product != null) {
+                store(product);
+            } else {
+                delete(id);
+            }
+        }
+        for (Node node : dirty) {
+            clean(node);
+        }
+        dirty.clear();
+    }
+
+    private void link(Doc doc) {
+        for (String term : doc.terms) {
+            Node node = root;
+            for (int i = 0; i < term.length(); i++) {
+                node = node.childOrCreate(term.charAt(i));
+                node.entries++;
+                offer(node, doc);
+            }
+            if (node.postings == null) {
+                node.postings = new ConcurrentSkipListSet<>(BEST_FIRST);
+            }
+            node.postings.add(doc);
+            node.postingCount++;
+        }
+    }
+
+    // merge(): words arrive sorted, so each walk starts where it leaves the
+    // previous word's path; caches are left dirty for one clean() at the end
+    private void link(Fragment fragment, List<Node> terminals) {
+        Node[] path = {root};
+        String word = "";
+        int count = 0;
+        for (int i = 0; i <= fragment.words.length; i++) {
+            String next = i < fragment.words.length ? fragment.words[i] : null;
+            if (next == null || !next.equals(word)) {
+                for (int c = 1; c <= word.length(); c++) {
+                    path[c].entries += count;
+                }
+                if (next == null) {
+                    break;
+                }
+                int common = 0;
+                while (common < word.length() && common < next.length()
+                        && word.charAt(common) == next.charAt(common)) {
+                    common++;
+                }
+                if (path.length <= next.length()) {
+                    path = Arrays.copyOf(path, next.length() + 1);
+                }
+                for (int c = common; c < next.length(); c++) {
+                    path[c + 1] = path[c].childOrCreate(next.charAt(c));
+                    path[c + 1].dirty = true;
+                }
+                word = next;
+                count = 0;
+            }
+            Doc doc = fragment.postings[i];
+            if (docs.get(doc.id) != doc) {
+                // Replaced by a later row for the same product
+                continue;
+            }
+            Node terminal = path[word.length()];
+            if (terminal.pending == null) {
+                terminal.pending = new ArrayList<>(1);
+                terminals.add(terminal);
+            }
+            terminal.pending.add(doc);
+            count++;
+        }
+    }
+
+    private void unlink(Doc doc) {
+        for (String term : doc.terms) {
+            Node[] path = new Node[term.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < term.length(); i++) {
+                path[i + 1] = path[i].child(term.charAt(i));
+                path[i + 1].entries--;
+                if (!path[i + 1].dirty && path[i + 1].containsTop(doc.id)) {
+                    path[i + 1].dirty = true;
+                    dirty.add(path[i + 1]);
+                }
+            }
+            Node terminal = path[term.length()];
+            terminal.postings.remove(doc);
+            if (--terminal.postingCount == 0) {
+                terminal.postings = null;
+            }
+            // Prune branches that no longer lead to any word
+            for (int i = term.length(); i > 0 && path[i].isEmpty(); i--) {
+                path[i - 1].removeChild(term.charAt(i - 1));
+            }
+        }
+    }
+
+    // Keep a clean node's cache equal to the best cacheSize docs of its subtree
+    private void offer(Node node, Doc doc) {
+        if (node.dirty || node.containsTop(doc.id)) {
+            return;
+        }
+        int pos = Arrays.binarySearch(node.top, 0, node.top.length, doc, BEST_FIRST);
+        int insertAt = pos >= 0 ? pos : -pos - 1;
+        if (insertAt >= cacheSize) {
+            return;
+        }
+        int length = Math.min(node.top.length + 1, cacheSize);
+        Doc[] top = new Doc[length];
+        System.arraycopy(node.top, 0, top, 0, insertAt);
+        top[insertAt] = doc;
+        System.arraycopy(node.top, insertAt, top, insertAt + 1, length - insertAt - 1);
+        node.top = top;
+    }
+
+    private Doc[] clean(Node node) {
+        if (!node.dirty) {
+            return node.top;
+        }
+        NavigableSet<Doc> postings = node.postings;
+        Node[] children = node.children;
+        if (postings == null && children.length == 1) {
+            // Same docs as the child; caches are replaced, never modified, so share it
+            node.top = clean(children[0]);
+            node.dirty = false;
+            return node.top;
+        }
+        Set<Doc> candidates = new LinkedHashSet<>();
+        if (postings != null) {
+            for (Doc doc : postings) {
+                if (candidates.size() == cacheSize) {
+                    break;
+                }
+                candidates.add(doc);
+            }
+        }
+        for (Node child : children) {
+            candidates.addAll(Arrays.asList(clean(child)));
+        }
+        Doc[] top = candidates.toArray(NO_DOCS);
+        Arrays.sort(top, BEST_FIRST);
+        top = top.length > cacheSize ? Arrays.copyOf(top, cacheSize) : top;
+        node.top = top;
+        node.dirty = false;
+        return top;
+    }
+
+    private static void collect(Node node, Set<String> required, int limit, PriorityQueue<Doc> best,
+                                Set<Integer> seen, int[] budget) {
+        NavigableSet<Doc> postings = node.postings;
+        if (postings != null) {
+            for (Doc doc : postings) {
+                if (--budget[0] < 0) {
+                    return;
+                }
+                if (!doc.hasTerms(required) || !seen.add(doc.id)) {
+                    continue;
+                }
+                best.add(doc);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        for (Node child : node.children) {
+            if (budget[0] < 0) {
+                return;
+            }
+            collect(child, required, limit, best, seen, budget);
+        }
+    }
+
+    private Node find(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private static String[] distinctTerms(String name) {
+        return new LinkedHashSet<>(TextTokenizer.tokenize(name)).toArray(new String[0]);
+    }
+
+    /**
+     * One chunk's docs, and its (word, doc) pairs sorted by word and then
+     * best first
+     */
+    static final class Fragment {
+        private final Doc[] docs;
+        private final String[] words;
+        private final Doc[] postings;
+
+        private Fragment(Doc[] docs, int postingCount) {
+            this.docs = docs;
+            words = new String[postingCount];
+            postings = new Doc[postingCount];
+        }
+    }
+
+    private static final class Word {
+        final String word;
+        final List<Doc> docs = new ArrayList<>(1);
+
+        Word(String word) {
+            this.word = word;
+        }
+    }
+
+    private static final class Doc {
+        final int id;
+        final String name;
+        final double score;
+        final String[] terms;
+
+        Doc(int id, String name, double score, String[] terms) {
+            this.id = id;
+            this.name = name;
+            this.score = score;
+            this.terms = terms;
+        }
+
+        boolean hasTerms(Set<String> required) {
+            return required.isEmpty() || Arrays.asList(terms).containsAll(required);
+        }
+
+        boolean hasPrefix(String prefix) {
+            for (String term : terms) {
+                if (term.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Node {
+        final char label;
+        // Sorted by label; writers replace the array, never modify it
+        volatile Node[] children = NO_CHILDREN;
+        // Docs with this exact word, best first
+        volatile NavigableSet<Doc> postings;
+        volatile int postingCount;
+        // Word occurrences in this subtree
+        volatile int entries;
+        volatile Doc[] top = NO_DOCS;
+        // Only read and written with the lock held
+        boolean dirty;
+        // Docs merge() is collecting for this word
+        List<Doc> pending;
+
+        Node(char label) {
+            this.label = label;
+        }
+
+        Node child(char c) {
+            Node[] nodes = children;
+            int i = indexOf(nodes, c);
+            return i >= 0 ? nodes[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            Node[] nodes = children;
+            int i = indexOf(nodes, c);
+            if (i >= 0) {
+                return nodes[i];
+            }
+            int insertAt = -i - 1;
+            Node[] newChildren = new Node[nodes.length + 1];
+            System.arraycopy(nodes, 0, newChildren, 0, insertAt);
+            newChildren[insertAt] = new Node(c);
+            System.arraycopy(nodes, insertAt, newChildren, insertAt + 1, nodes.length - insertAt);
+            children = newChildren;
+            return newChildren[insertAt];
+        }
+
+        void removeChild(char c) {
+            Node[] nodes = children;
+            int i = indexOf(nodes, c);
+            if (i < 0) {
+                return;
+            }
+            if (nodes.length == 1) {
+                children = NO_CHILDREN;
+                return;
+            }
+            Node[] newChildren = new Node[nodes.length - 1];
+            System.arraycopy(nodes, 0, newChildren, 0, i);
+            System.arraycopy(nodes, i + 1, newChildren, i, nodes.length - i - 1);
+            children = newChildren;
+        }
+
+        boolean containsTop(int id) {
+            for (Doc doc : top) {
+                if (doc.id == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            return postings == null && children.length == 0;
+        }
+
+        // Binary search by label, returning -(insertion point) - 1 if absent
+        private static int indexOf(Node[] nodes, char c) {
+            int lo = 0;
+            int hi = nodes.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char label = nodes[mid].label;
+                if (label < c) {
+                    lo = mid + 1;
+                } else if (label > c) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.nationwide.legacy.dao;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps writes out of a catalog load
+ *
+ * Writes enter and exit the gate and run concurrently with each other; the
+ * in-flight count is kept in striped counters so they do not contend on
+ * it. close() turns new writes away with a CatalogLoadingException until
+ * open() - they fail at once rather than queue behind the load. drain()
+ * also waits for the writes already inside, so the load that follows
+ * cannot lose them.
+ */
+final class WriteGate {
+
+    private static final long DRAIN_POLL_MILLIS = 1;
+
+    // Both only grow: a sum of one signed adder can miss an increment but see its decrement
+    private final LongAdder entered = new LongAdder();
+    private final LongAdder exited = new LongAdder();
+    private volatile boolean closed;
+
+    void enter() {
+        // Count first: a drain() that misses the increment has already closed the gate
+        entered.increment();
+        if (closed) {
+            exited.increment();
+            throw new CatalogLoadingException();
+        }
+    }
+
+    void exit() {
+        exited.increment();
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    void drain() throws InterruptedException {
+        closed = true;
+        // Exits before entries, so every exit counted has its entry counted too
+        while (exited.sum() != entered.sum()) {
+            Thread.sleep(DRAIN_POLL_MILLIS);
+        }
+    }
+
+    void open() {
+        closed = false;
+    }
+}
@@ -20,7 +20,8 @@ public class Product implements Serializable {
     public String name;
     public String category;
     public double price;
-    public int stock;
+    // volatile so ProductDAO can adjust it with compare-and-set
+    public volatile int stock;
 
     // Problem: No-arg constructor required by Struts
     public Product() {
@@ -0,0 +1,61 @@
+package com.nationwide.legacy.model;
+
+/**
+ * Read-only view of a stored product
+ *
+ * A view holds a reference to the product and reads through it rather
+ * than copying its fields, so a single view can be pointed at one product
+ * after another without allocating. Stock is read live. pooled() lends
+ * the calling thread's view, which stays valid until that thread borrows
+ * it again.
+ */
+public final class ProductView {
+
+    private static final ThreadLocal<ProductView> POOL = ThreadLocal.withInitial(ProductView::new);
+
+    private Product product;
+
+    /**
+     * This thread's view, emptied
+     */
+    public static ProductView pooled() {
+        return POOL.get().wrap(null);
+    }
+
+    /**
+     * Point this view at a product (null leaves it empty); returns this view
+     */
+    public ProductView wrap(Product product) {
+        this.product = product;
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return product == null;
+    }
+
+    public int getId() {
+        return product.id;
+    }
+
+    public String getName() {
+        return product.name;
+    }
+
+    public String getCategory() {
+        return product.category;
+    }
+
+    public double getPrice() {
+        return product.price;
+    }
+
+    public int getStock() {
+        return product.stock;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(product);
+    }
+}
@@ -0,0 +1,51 @@
+package com.nationwide.legacy.model;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Units of one or more products held for an order until the reservation is
+ * confirmed, cancelled or expires
+ */
+public class StockReservation implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+    private final Map<Integer, Integer> lines;
+    private final long expiresAt;
+
+    public StockReservation(long id, Map<Integer, Integer> lines, long expiresAt) {
+        this.id = id;
+        this.lines = Collections.unmodifiableMap(new LinkedHashMap<>(lines));
+        this.expiresAt = expiresAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Product id to reserved quantity
+     */
+    public Map<Integer, Integer> getLines() {
+        return lines;
+    }
+
+    /**
+     * Expiry time in epoch milliseconds
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "StockReservation{id=" + id + ", lines=" + lines + ", expiresAt=" + expiresAt + "}";
+    }
+}
@@ -0,0 +1,112 @@
+package com.nationwide.legacy.replication;
+
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.util.BinaryHelper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One entry of the replication log
+ *
+ * Stores carry the full product (BinaryHelper record layout), so applying
+ * an entry twice is harmless - followers rely on that when they catch up
+ * from a snapshot that already contains some of the entries after it.
+ * A reset carries all rows of the catalog that replaced the old one.
+ */
+public final class Mutation {
+
+    public static final byte STORE = 1;
+    public static final byte DELETE = 2;
+    public static final byte RESET = 3;
+
+    private static final int MAX_PRESIZE = 1024;
+
+    private final long seq;
+    private final byte op;
+    private final Product product;
+    private final int id;
+    private final List<Product> products;
+
+    private Mutation(long seq, byte op, Product product, int id, List<Product> products) {
+        this.seq = seq;
+        this.op = op;
+        this.product = product;
+        this.id = id;
+        this.products = products;
+    }
+
+    static Mutation store(long seq, Product product) {
+        return new Mutation(seq, STORE, product, product.getId(), null);
+    }
+
+    static Mutation delete(long seq, int id) {
+        return new Mutation(seq, DELETE, null, id, null);
+    }
+
+    static Mutation reset(long seq, List<Product> products) {
+        return new Mutation(seq, RESET, null, 0, products);
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public byte getOp() {
+        return op;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * The new catalog's rows (RESET only)
+     */
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeLong(seq);
+        out.writeByte(op);
+        if (op == STORE) {
+            BinaryHelper.writeRecord(product, out);
+        } else if (op == DELETE) {
+            out.writeInt(id);
+        } else if (op == RESET) {
+            out.writeInt(products.size());
+            for (Product row : products) {
+                BinaryHelper.writeRecord(row, out);
+            }
+        }
+    }
+
+    static Mutation read(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        byte op = in.readByte();
+        switch (op) {
+            case STORE:
+                return store(seq, BinaryHelper.readRecord(in));
+            case DELETE:
+                return delete(seq, in.readInt());
+            case RESET: {
+                int count = in.readInt();
+                List<Product> rows = new ArrayList<>(Math.min(Math.max(count, 0), MAX_PRESIZE));
+                for (int i = 0; i < count; i++) {
+                    rows.add(BinaryHelper.readRecord(in));
+                }
+                return reset(seq, rows);
+            }
+            default:
+                throw new IOException("Unknown mutation op: " + op);
+        }
+    }
+}
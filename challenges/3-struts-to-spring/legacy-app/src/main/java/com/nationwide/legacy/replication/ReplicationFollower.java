@@ -0,0 +1,421 @@
+package com.nationwide.legacy.replication;
+
+import com.nationwide.legacy.dao.CatalogLoadingException;
+import com.nationwide.legacy.dao.InsufficientStockException;
+import com.nationwide.legacy.dao.ProductDAO;
+import com.nationwide.legacy.dao.ProductWriteForwarder;
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.StockReservation;
+import com.nationwide.legacy.util.BinaryHelper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replication follower: applies the leader's mutation stream to the local
+ * ProductDAO and forwards local writes to the leader
+ *
+ * The subscription reconnects on failure and resumes from the last applied
+ * sequence number (or takes a snapshot if the leader cannot resume it). A
+ * forwarded write waits until the follower has applied it, so a client that
+ * writes and then reads on the same follower sees its own write. Write
+ * connections are kept for reuse; one that fails is dropped, and its write
+ * is reported as failed rather than sent again.
+ */
+public class ReplicationFollower implements ReplicationNode, ProductWriteForwarder {
+
+    private static final Log LOG = LogFactory.getLog(ReplicationFollower.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final long RETRY_MILLIS = 1000;
+    private static final long READ_YOUR_WRITES_MILLIS = 2000;
+    private static final int FORWARD_TIMEOUT_MILLIS = 10000;
+    private static final int MAX_IDLE_CHANNELS = 4;
+    // Retire idle write connections well before the leader drops them
+    private static final long CHANNEL_IDLE_MILLIS = ReplicationProtocol.WRITE_IDLE_MILLIS / 2;
+
+    private final ProductDAO dao;
+    private final String leaderHost;
+    private final int leaderPort;
+    private final byte[] secret;
+
+    private final Object progress = new Object();
+    private volatile long epoch;
+    private volatile long appliedSeq = -1;
+    private volatile long leaderHeadSeq = -1;
+    private volatile long lastContactMillis;
+    private volatile boolean connected;
+
+    private volatile boolean running;
+    private Thread subscriber;
+    private Socket subscription;
+    private final Deque<WriteChannel> idleChannels = new ArrayDeque<>();
+
+    public ReplicationFollower(ProductDAO dao, String leaderHost, int leaderPort, String secret) {
+        this.dao = dao;
+        this.leaderHost = leaderHost;
+        this.leaderPort = leaderPort;
+        this.secret = ReplicationProtocol.secretBytes(secret);
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        dao.setWriteForwarder(this);
+        subscriber = new Thread(this::subscribeLoop, "replication-follower");
+        subscriber.setDaemon(true);
+        subscriber.start();
+        LOG.info("Replication follower of " + leaderHost + ":" + leaderPort + " started");
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        dao.setWriteForwarder(null);
+        closeSubscription();
+        closeIdleChannels();
+        if (subscriber != null) {
+            subscriber.interrupt();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        long applied = appliedSeq;
+        long head = leaderHeadSeq;
+        status.put("role", "follower");
+        status.put("leader", leaderHost + ":" + leaderPort);
+        status.put("connected", connected);
+        status.put("epoch", epoch);
+        status.put("appliedSeq", applied);
+        status.put("leaderHeadSeq", head);
+        status.put("lagEntries", Math.max(0, head - applied));
+        status.put("millisSinceLeaderContact",
+                lastContactMillis == 0 ? -1 : System.currentTimeMillis() - lastContactMillis);
+        return status;
+    }
+
+    @Override
+    public Product addProduct(Product product) {
+        return forwardUnchecked(ReplicationProtocol.ADD,
+                out -> BinaryHelper.writeRecord(product, out), BinaryHelper::readRecord);
+    }
+
+    @Override
+    public Product updateProduct(Product product) {
+        return forwardUnchecked(ReplicationProtocol.UPDATE,
+                out -> BinaryHelper.writeRecord(product, out), BinaryHelper::readRecord);
+    }
+
+    @Override
+    public boolean deleteProduct(int id) {
+        return forwardUnchecked(ReplicationProtocol.DELETE, out -> out.writeInt(id), in -> Boolean.TRUE) != null;
+    }
+
+    @Override
+    public List<Product> adjustStock(Map<Integer, Integer> deltas) throws InsufficientStockException {
+        return forward(ReplicationProtocol.ADJUST_STOCK, out -> ReplicationProtocol.writeLines(deltas, out), in -> {
+            int count = in.readInt();
+            List<Product> adjusted = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                adjusted.add(BinaryHelper.readRecord(in));
+            }
+            return adjusted;
+        });
+    }
+
+    @Override
+    public StockReservation reserveStock(Map<Integer, Integer> lines, long ttlMillis)
+            throws InsufficientStockException {
+        return forward(ReplicationProtocol.RESERVE, out -> {
+            out.writeLong(ttlMillis);
+            ReplicationProtocol.writeLines(lines, out);
+        }, in -> new StockReservation(in.readLong(), lines, in.readLong()));
+    }
+
+    @Override
+    public boolean confirmReservation(long reservationId) {
+        return forwardUnchecked(ReplicationProtocol.CONFIRM,
+                out -> out.writeLong(reservationId), in -> Boolean.TRUE) != null;
+    }
+
+    @Override
+    public boolean cancelReservation(long reservationId) {
+        return forwardUnchecked(ReplicationProtocol.CANCEL,
+                out -> out.writeLong(reservationId), in -> Boolean.TRUE) != null;
+    }
+
+    private void subscribeLoop() {
+        while (running) {
+            try (Socket socket = connect()) {
+                synchronized (this) {
+                    subscription = socket;
+                }
+                socket.setSoTimeout((int) (ReplicationProtocol.HEARTBEAT_MILLIS * 3));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                ReplicationProtocol.authenticateLeader(secret, in, out);
+                out.writeByte(ReplicationProtocol.SUBSCRIBE);
+                out.writeLong(epoch);
+                out.writeLong(appliedSeq);
+                out.flush();
+                connected = true;
+                while (running) {
+                    readFrame(in);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    LOG.warn("Replication stream from " + leaderHost + ":" + leaderPort
+                            + " lost, retrying: " + e.getMessage());
+                }
+                // The leader may have restarted; do not send writes down its old connections
+                closeIdleChannels();
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void readFrame(DataInputStream in) throws IOException {
+        byte frame = in.readByte();
+        if (frame == ReplicationProtocol.SNAPSHOT) {
+            long snapshotEpoch = in.readLong();
+            long seq = in.readLong();
+            int count = in.readInt();
+            List<Product> products = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                products.add(BinaryHelper.readRecord(in));
+            }
+            dao.applyReplicatedSnapshot(products);
+            leaderHeadSeq = seq;
+            advance(snapshotEpoch, seq);
+        } else if (frame == ReplicationProtocol.ENTRIES) {
+            leaderHeadSeq = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Mutation mutation = Mutation.read(in);
+                apply(mutation);
+                advance(mutation.getSeq());
+            }
+        } else {
+            throw new IOException("Unknown replication frame: " + frame);
+        }
+        lastContactMillis = System.currentTimeMillis();
+    }
+
+    private void apply(Mutation mutation) {
+        switch (mutation.getOp()) {
+            case Mutation.STORE:
+                dao.applyReplicatedStore(mutation.getProduct());
+                break;
+            case Mutation.DELETE:
+                dao.applyReplicatedDelete(mutation.getId());
+                break;
+            case Mutation.RESET:
+                dao.applyReplicatedSnapshot(mutation.getProducts());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void advance(long seq) {
+        advance(epoch, seq);
+    }
+
+    private void advance(long newEpoch, long seq) {
+        synchronized (progress) {
+            epoch = newEpoch;
+            appliedSeq = seq;
+            progress.notifyAll();
+        }
+    }
+
+    /**
+     * Send one write to the leader and wait until it has come back through
+     * the replication stream. Returns the decoded result, or null if the
+     * leader reported the product or reservation missing.
+     */
+    private <T> T forward(byte op, Request request, Reply<T> reply) throws InsufficientStockException {
+        WriteChannel channel = null;
+        try {
+            channel = takeChannel();
+            DataOutputStream out = channel.out;
+            DataInputStream in = channel.in;
+            out.writeByte(op);
+            request.write(out);
+            out.flush();
+
+            byte status = in.readByte();
+            long replyEpoch = in.readLong();
+            long seq = in.readLong();
+            if (status == ReplicationProtocol.ERROR) {
+                String message = in.readUTF();
+                releaseChannel(channel);
+                // The leader's DAO threw, as a local one would for an invalid request
+                throw new IllegalArgumentException("Leader rejected write: " + message);
+            }
+            if (status == ReplicationProtocol.LOADING) {
+                releaseChannel(channel);
+                throw new CatalogLoadingException();
+            }
+            if (status == ReplicationProtocol.INSUFFICIENT) {
+                InsufficientStockException shortfall =
+                        new InsufficientStockException(in.readInt(), in.readInt(), in.readInt());
+                releaseChannel(channel);
+                throw shortfall;
+            }
+            T result = status == ReplicationProtocol.OK ? reply.read(in) : null;
+            releaseChannel(channel);
+            awaitApplied(replyEpoch, seq);
+            return result;
+        } catch (IOException e) {
+            // The write may or may not have been applied; never resend it
+            if (channel != null) {
+                channel.close();
+            }
+            throw new UncheckedIOException("Could not forward write to leader "
+                    + leaderHost + ":" + leaderPort, e);
+        }
+    }
+
+    // For writes the leader never answers with INSUFFICIENT
+    private <T> T forwardUnchecked(byte op, Request request, Reply<T> reply) {
+        try {
+            return forward(op, request, reply);
+        } catch (InsufficientStockException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Sequence numbers of different leader epochs are unrelated, so a write
+    // to a restarted leader waits for that leader's snapshot as well
+    private void awaitApplied(long writeEpoch, long seq) {
+        long deadline = System.currentTimeMillis() + READ_YOUR_WRITES_MILLIS;
+        synchronized (progress) {
+            while (epoch != writeEpoch || appliedSeq < seq) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return;
+                }
+                try {
+                    progress.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private WriteChannel takeChannel() throws IOException {
+        synchronized (idleChannels) {
+            WriteChannel channel = idleChannels.pollFirst();
+            if (channel != null && System.currentTimeMillis() - channel.idleSince < CHANNEL_IDLE_MILLIS) {
+                return channel;
+            }
+            if (channel != null) {
+                channel.close();
+                // The others have been idle even longer
+                closeIdleChannels();
+            }
+        }
+        Socket socket = connect();
+        try {
+            socket.setSoTimeout(FORWARD_TIMEOUT_MILLIS);
+            WriteChannel channel = new WriteChannel(socket);
+            ReplicationProtocol.authenticateLeader(secret, channel.in, channel.out);
+            channel.out.writeByte(ReplicationProtocol.WRITE);
+            return channel;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void releaseChannel(WriteChannel channel) {
+        synchronized (idleChannels) {
+            if (running && idleChannels.size() < MAX_IDLE_CHANNELS) {
+                channel.idleSince = System.currentTimeMillis();
+                idleChannels.addFirst(channel);
+                return;
+            }
+        }
+        channel.close();
+    }
+
+    private void closeIdleChannels() {
+        synchronized (idleChannels) {
+            for (WriteChannel channel : idleChannels) {
+                channel.close();
+            }
+            idleChannels.clear();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(leaderHost, leaderPort), CONNECT_TIMEOUT_MILLIS);
+        return socket;
+    }
+
+    private synchronized void closeSubscription() {
+        if (subscription != null) {
+            try {
+                subscription.close();
+            } catch (IOException ignored) {
+                // shutting down
+            }
+        }
+    }
+
+    private static final class WriteChannel {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        long idleSince;
+
+        WriteChannel(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // already unusable
+            }
+        }
+    }
+
+    private interface Request {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface Reply<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+}
@@ -0,0 +1,271 @@
+package com.nationwide.legacy.replication;
+
+import com.nationwide.legacy.dao.CatalogLoadingException;
+import com.nationwide.legacy.dao.InsufficientStockException;
+import com.nationwide.legacy.dao.ProductDAO;
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.StockReservation;
+import com.nationwide.legacy.util.BinaryHelper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replication leader: records DAO mutations in a ReplicationLog and ships
+ * them over plain TCP to every subscribed follower
+ *
+ * New followers, followers from a previous leader epoch and followers that
+ * fell out of the retained log receive a full snapshot first. The same
+ * port accepts writes forwarded by followers. It listens on the configured
+ * bind address only, and every connection must pass the shared-secret
+ * handshake (see ReplicationProtocol) before it can subscribe or write.
+ */
+public class ReplicationLeader implements ReplicationNode {
+
+    private static final Log LOG = LogFactory.getLog(ReplicationLeader.class);
+
+    private final ProductDAO dao;
+    private final String bindAddress;
+    private final int port;
+    private final byte[] secret;
+    private final ReplicationLog log;
+    private final Map<String, AtomicLong> followers = new ConcurrentHashMap<>();
+
+    private ServerSocket serverSocket;
+    private ExecutorService connections;
+
+    public ReplicationLeader(ProductDAO dao, String bindAddress, int port, int logCapacity, String secret) {
+        this.dao = dao;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.secret = ReplicationProtocol.secretBytes(secret);
+        this.log = new ReplicationLog(logCapacity);
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName(bindAddress));
+        connections = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "replication-leader");
+            t.setDaemon(true);
+            return t;
+        });
+        dao.setMutationListener(log);
+        connections.execute(this::acceptLoop);
+        LOG.info("Replication leader listening on " + serverSocket.getLocalSocketAddress());
+    }
+
+    @Override
+    public synchronized void stop() {
+        dao.setMutationListener(null);
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+            // shutting down
+        }
+        if (connections != null) {
+            connections.shutdownNow();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        long head = log.getHeadSeq();
+        status.put("role", "leader");
+        status.put("listen", serverSocket == null ? null : serverSocket.getLocalSocketAddress().toString());
+        status.put("epoch", log.getEpoch());
+        status.put("headSeq", head);
+        Map<String, Object> lag = new LinkedHashMap<>();
+        for (Map.Entry<String, AtomicLong> follower : followers.entrySet()) {
+            lag.put(follower.getKey(), head - follower.getValue().get());
+        }
+        status.put("followerLagEntries", lag);
+        return status;
+    }
+
+    synchronized InetSocketAddress getListenAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> handle(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LOG.warn("Replication accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        String peer = socket.getRemoteSocketAddress().toString();
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(ReplicationProtocol.HANDSHAKE_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            if (!ReplicationProtocol.authenticateFollower(secret, in, out)) {
+                LOG.warn("Rejected unauthenticated replication connection from " + peer);
+                return;
+            }
+            byte kind = in.readByte();
+            if (kind == ReplicationProtocol.SUBSCRIBE) {
+                stream(peer, in, out);
+            } else if (kind == ReplicationProtocol.WRITE) {
+                s.setSoTimeout(ReplicationProtocol.WRITE_IDLE_MILLIS);
+                // Followers keep write connections open for their next writes
+                for (int op = in.read(); op >= 0; op = in.read()) {
+                    applyWrite((byte) op, in, out);
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Replication connection from " + peer + " closed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            followers.remove(peer);
+        }
+    }
+
+    private void stream(String peer, DataInputStream in, DataOutputStream out)
+            throws IOException, InterruptedException {
+        long followerEpoch = in.readLong();
+        long sent = in.readLong();
+        AtomicLong position = new AtomicLong(sent);
+        followers.put(peer, position);
+
+        boolean needSnapshot = !log.canResumeFrom(followerEpoch, sent);
+        while (!Thread.currentThread().isInterrupted()) {
+            if (needSnapshot) {
+                sent = sendSnapshot(out);
+                needSnapshot = false;
+            } else {
+                List<Mutation> batch = log.entriesAfter(sent, ReplicationProtocol.HEARTBEAT_MILLIS,
+                        ReplicationProtocol.MAX_BATCH);
+                if (batch == null) {
+                    needSnapshot = true;
+                    continue;
+                }
+                out.writeByte(ReplicationProtocol.ENTRIES);
+                out.writeLong(log.getHeadSeq());
+                out.writeInt(batch.size());
+                for (Mutation mutation : batch) {
+                    mutation.write(out);
+                    sent = mutation.getSeq();
+                }
+                out.flush();
+            }
+            position.set(sent);
+        }
+    }
+
+    private long sendSnapshot(DataOutputStream out) throws IOException {
+        // Read the head before the data: entries after it may already be in
+        // the snapshot, which is fine because stores and deletes are idempotent
+        long seq = log.getHeadSeq();
+        List<Product> products = dao.getAllProducts();
+        out.writeByte(ReplicationProtocol.SNAPSHOT);
+        out.writeLong(log.getEpoch());
+        out.writeLong(seq);
+        out.writeInt(products.size());
+        for (Product product : products) {
+            BinaryHelper.writeRecord(product, out);
+        }
+        out.flush();
+        return seq;
+    }
+
+    private void applyWrite(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        try {
+            switch (op) {
+                case ReplicationProtocol.ADD:
+                    replyProduct(dao.addProduct(BinaryHelper.readRecord(in)), out);
+                    break;
+                case ReplicationProtocol.UPDATE:
+                    replyProduct(dao.updateProduct(BinaryHelper.readRecord(in)), out);
+                    break;
+                case ReplicationProtocol.DELETE:
+                    replyStatus(dao.deleteProduct(in.readInt()), out);
+                    break;
+                case ReplicationProtocol.ADJUST_STOCK: {
+                    List<Product> adjusted = dao.adjustStock(ReplicationProtocol.readLines(in));
+                    if (replyStatus(adjusted != null, out)) {
+                        out.writeInt(adjusted.size());
+                        for (Product product : adjusted) {
+                            BinaryHelper.writeRecord(product, out);
+                        }
+                    }
+                    break;
+                }
+                case ReplicationProtocol.RESERVE: {
+                    long ttlMillis = in.readLong();
+                    StockReservation reservation = dao.reserveStock(ReplicationProtocol.readLines(in), ttlMillis);
+                    if (replyStatus(reservation != null, out)) {
+                        out.writeLong(reservation.getId());
+                        out.writeLong(reservation.getExpiresAt());
+                    }
+                    break;
+                }
+                case ReplicationProtocol.CONFIRM:
+                    replyStatus(dao.confirmReservation(in.readLong()), out);
+                    break;
+                case ReplicationProtocol.CANCEL:
+                    replyStatus(dao.cancelReservation(in.readLong()), out);
+                    break;
+                default:
+                    throw new IOException("Unknown write op: " + op);
+            }
+        } catch (InsufficientStockException e) {
+            replyHeader(ReplicationProtocol.INSUFFICIENT, out);
+            out.writeInt(e.getProductId());
+            out.writeInt(e.getRequested());
+            out.writeInt(e.getAvailable());
+        } catch (CatalogLoadingException e) {
+            replyHeader(ReplicationProtocol.LOADING, out);
+        } catch (RuntimeException e) {
+            replyHeader(ReplicationProtocol.ERROR, out);
+            out.writeUTF(String.valueOf(e.getMessage()));
+        }
+        out.flush();
+    }
+
+    // Writes the reply header and returns found, so the caller can append the result
+    private boolean replyStatus(boolean found, DataOutputStream out) throws IOException {
+        replyHeader(found ? ReplicationProtocol.OK : ReplicationProtocol.NOT_FOUND, out);
+        return found;
+    }
+
+    private void replyHeader(byte status, DataOutputStream out) throws IOException {
+        out.writeByte(status);
+        out.writeLong(log.getEpoch());
+        out.writeLong(log.getHeadSeq());
+    }
+
+    private void replyProduct(Product product, DataOutputStream out) throws IOException {
+        if (replyStatus(product != null, out)) {
+            BinaryHelper.writeRecord(product, out);
+        }
+    }
+}
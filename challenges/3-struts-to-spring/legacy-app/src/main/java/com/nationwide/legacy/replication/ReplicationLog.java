@@ -0,0 +1,101 @@
+package com.nationwide.legacy.replication;
+
+import com.nationwide.legacy.dao.ProductMutationListener;
+import com.nationwide.legacy.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded, ordered log of DAO mutations kept by the replication leader
+ *
+ * Sequence numbers start at 1 and are only meaningful together with the
+ * epoch, which changes every time a leader starts. The log is a ring of
+ * the last capacity entries; a follower that falls behind the retained
+ * range catches up from a snapshot instead. A reset entry keeps the rows
+ * of its catalog reachable until it is overwritten.
+ */
+public class ReplicationLog implements ProductMutationListener {
+
+    private final long epoch;
+    private final Mutation[] ring;
+    private long headSeq;
+
+    public ReplicationLog(int capacity) {
+        this.epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+        this.ring = new Mutation[capacity];
+    }
+
+    @Override
+    public synchronized void productStored(Product product) {
+        append(Mutation.store(headSeq + 1, product));
+    }
+
+    @Override
+    public synchronized void productDeleted(int id) {
+        append(Mutation.delete(headSeq + 1, id));
+    }
+
+    @Override
+    public synchronized void catalogReset(List<Product> products) {
+        append(Mutation.reset(headSeq + 1, products));
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public synchronized long getHeadSeq() {
+        return headSeq;
+    }
+
+    /**
+     * True if a follower at this position can continue from the log alone
+     */
+    public synchronized boolean canResumeFrom(long followerEpoch, long appliedSeq) {
+        return followerEpoch == epoch && appliedSeq <= headSeq && appliedSeq >= oldestResumableSeq();
+    }
+
+    /**
+     * Entries after the given sequence number, waiting up to timeoutMillis
+     * for at least one. Returns an empty list on timeout and null if the
+     * requested position has already been overwritten.
+     */
+    public synchronized List<Mutation> entriesAfter(long seq, long timeoutMillis, int max)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (headSeq <= seq) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return Collections.emptyList();
+            }
+            wait(remaining);
+        }
+        if (seq < oldestResumableSeq()) {
+            return null;
+        }
+        long last = Math.min(headSeq, seq + max);
+        List<Mutation> batch = new ArrayList<>((int) (last - seq));
+        for (long s = seq + 1; s <= last; s++) {
+            batch.add(ring[slot(s)]);
+        }
+        return batch;
+    }
+
+    private long oldestResumableSeq() {
+        return Math.max(0, headSeq - ring.length);
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % ring.length);
+    }
+
+    // Called with this log locked
+    private void append(Mutation mutation) {
+        headSeq = mutation.getSeq();
+        ring[slot(headSeq)] = mutation;
+        notifyAll();
+    }
+}
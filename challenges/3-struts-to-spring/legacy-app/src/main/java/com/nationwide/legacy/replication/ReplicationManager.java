@@ -0,0 +1,69 @@
+package com.nationwide.legacy.replication;
+
+import com.nationwide.legacy.dao.ProductDAO;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the replication role of this node
+ *
+ * Roles:
+ *   standalone  no replication (default)
+ *   leader      ships mutations to followers on the given address and port
+ *   follower    replicates from leaderHost:leaderPort and forwards writes
+ *
+ * Leader and followers must share the same secret.
+ */
+public class ReplicationManager {
+
+    public static final String STANDALONE = "standalone";
+    public static final String LEADER = "leader";
+    public static final String FOLLOWER = "follower";
+
+    private static ReplicationManager instance;
+
+    private ReplicationNode node;
+
+    private ReplicationManager() {
+    }
+
+    public static synchronized ReplicationManager getInstance() {
+        if (instance == null) {
+            instance = new ReplicationManager();
+        }
+        return instance;
+    }
+
+    public synchronized void startLeader(String bindAddress, int port, int logCapacity, String secret)
+            throws IOException {
+        start(new ReplicationLeader(ProductDAO.getInstance(), bindAddress, port, logCapacity, secret));
+    }
+
+    public synchronized void startFollower(String leaderHost, int leaderPort, String secret) throws IOException {
+        start(new ReplicationFollower(ProductDAO.getInstance(), leaderHost, leaderPort, secret));
+    }
+
+    public synchronized void stop() {
+        if (node != null) {
+            node.stop();
+            node = null;
+        }
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        if (node == null) {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("role", STANDALONE);
+            return status;
+        }
+        return node.getStatus();
+    }
+
+    private void start(ReplicationNode newNode) throws IOException {
+        stop();
+        newNode.start();
+        node = newNode;
+    }
+}
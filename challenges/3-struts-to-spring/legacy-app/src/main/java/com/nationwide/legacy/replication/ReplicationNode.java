@@ -0,0 +1,19 @@
+package com.nationwide.legacy.replication;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A running replication role (leader or follower)
+ */
+public interface ReplicationNode {
+
+    void start() throws IOException;
+
+    void stop();
+
+    /**
+     * Role, positions and lag, for the replicationStatus action
+     */
+    Map<String, Object> getStatus();
+}
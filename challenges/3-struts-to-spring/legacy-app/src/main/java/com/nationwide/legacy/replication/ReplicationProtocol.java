@@ -0,0 +1,172 @@
+package com.nationwide.legacy.replication;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wire constants shared by ReplicationLeader and ReplicationFollower
+ *
+ * Every connection to the leader starts with a handshake that proves both
+ * sides know the shared secret without sending it:
+ *   follower -> int MAGIC, follower nonce
+ *   leader   -> leader nonce, HMAC-SHA256(secret, LEADER_PROOF, nonces)
+ *   follower -> HMAC-SHA256(secret, FOLLOWER_PROOF, nonces), byte request kind
+ * The leader drops connections whose proof does not match.
+ *
+ * SUBSCRIBE: follower sends long epoch, long appliedSeq; the leader then
+ * sends frames forever:
+ *   SNAPSHOT  long epoch, long seq, int count, count x product record
+ *   ENTRIES   long headSeq, int count, count x Mutation (count 0 = heartbeat)
+ * A RESET mutation carries every row of the new catalog, so it is applied
+ * like a snapshot.
+ *
+ * WRITE: follower sends any number of writes, one at a time, each a byte
+ * op and its arguments; the leader answers each with byte status, long
+ * epoch, long seq (log head after the write) and, if OK, the result:
+ *   ADD, UPDATE     product record             -> product record
+ *   DELETE          int id                     -> nothing
+ *   ADJUST_STOCK    int n, n x (int id, delta) -> int n, n x product record
+ *   RESERVE         long ttl, int n, n x (int id, quantity)
+ *                                              -> long reservationId, long expiresAt
+ *   CONFIRM, CANCEL long reservationId         -> nothing
+ * INSUFFICIENT is followed by int id, int requested, int available and
+ * ERROR by a UTF message; LOADING (nothing more) means the leader is
+ * loading a catalog snapshot and applied nothing. The leader closes a write connection that stays
+ * idle for WRITE_IDLE_MILLIS; followers retire theirs well before that.
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x5245504C; // "REPL"
+
+    static final byte SUBSCRIBE = 1;
+    static final byte WRITE = 2;
+
+    static final byte SNAPSHOT = 1;
+    static final byte ENTRIES = 2;
+
+    static final byte ADD = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+    static final byte ADJUST_STOCK = 4;
+    static final byte RESERVE = 5;
+    static final byte CONFIRM = 6;
+    static final byte CANCEL = 7;
+
+    static final byte OK = 0;
+    static final byte NOT_FOUND = 1;
+    static final byte ERROR = 2;
+    static final byte INSUFFICIENT = 3;
+    static final byte LOADING = 4;
+
+    static final long HEARTBEAT_MILLIS = 1000;
+    static final int MAX_BATCH = 1024;
+
+    static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+
+    static final int WRITE_IDLE_MILLIS = 60000;
+
+    private static final int NONCE_BYTES = 16;
+    private static final int PROOF_BYTES = 32;
+    private static final byte LEADER_PROOF = 1;
+    private static final byte FOLLOWER_PROOF = 2;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ReplicationProtocol() {
+    }
+
+    /**
+     * Follower side of the handshake; on return the caller sends the request
+     * kind
+     *
+     * @throws IOException if the peer does not prove it knows the secret
+     */
+    static void authenticateLeader(byte[] secret, DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] followerNonce = nonce();
+        out.writeInt(MAGIC);
+        out.write(followerNonce);
+        out.flush();
+        byte[] leaderNonce = new byte[NONCE_BYTES];
+        in.readFully(leaderNonce);
+        byte[] leaderProof = new byte[PROOF_BYTES];
+        in.readFully(leaderProof);
+        if (!MessageDigest.isEqual(leaderProof, proof(secret, LEADER_PROOF, followerNonce, leaderNonce))) {
+            throw new IOException("Replication leader failed authentication");
+        }
+        out.write(proof(secret, FOLLOWER_PROOF, followerNonce, leaderNonce));
+    }
+
+    /**
+     * Leader side of the handshake; false if the peer is not a follower that
+     * knows the secret
+     */
+    static boolean authenticateFollower(byte[] secret, DataInputStream in, DataOutputStream out)
+            throws IOException {
+        if (in.readInt() != MAGIC) {
+            return false;
+        }
+        byte[] followerNonce = new byte[NONCE_BYTES];
+        in.readFully(followerNonce);
+        byte[] leaderNonce = nonce();
+        out.write(leaderNonce);
+        out.write(proof(secret, LEADER_PROOF, followerNonce, leaderNonce));
+        out.flush();
+        byte[] followerProof = new byte[PROOF_BYTES];
+        in.readFully(followerProof);
+        return MessageDigest.isEqual(followerProof, proof(secret, FOLLOWER_PROOF, followerNonce, leaderNonce));
+    }
+
+    static byte[] secretBytes(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("A replication secret is required");
+        }
+        return secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] nonce() {
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        return nonce;
+    }
+
+    private static byte[] proof(byte[] secret, byte role, byte[] followerNonce, byte[] leaderNonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            mac.update(role);
+            mac.update(followerNonce);
+            mac.update(leaderNonce);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    /**
+     * Write product id to quantity/delta lines
+     */
+    static void writeLines(Map<Integer, Integer> lines, DataOutputStream out) throws IOException {
+        out.writeInt(lines.size());
+        for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+            out.writeInt(line.getKey());
+            out.writeInt(line.getValue());
+        }
+    }
+
+    static Map<Integer, Integer> readLines(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            lines.put(in.readInt(), in.readInt());
+        }
+        return lines;
+    }
+}
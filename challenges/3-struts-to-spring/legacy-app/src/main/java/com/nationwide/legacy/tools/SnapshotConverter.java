@@ -0,0 +1,70 @@
+package com.nationwide.legacy.tools;
+
+import com.nationwide.legacy.dao.CatalogSnapshot;
+import com.nationwide.legacy.model.Product;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Offline converter from a products.json-style array to a CatalogSnapshot
+ *
+ * Usage: SnapshotConverter <products.json> <catalog.snapshot> [chunkRows]
+ *
+ * The JSON array is read one element at a time, so the input can be much
+ * larger than the heap.
+ */
+public class SnapshotConverter {
+
+    private SnapshotConverter() {
+    }
+
+    public static void main(String[] args) throws IOException, JSONException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: SnapshotConverter <products.json> <catalog.snapshot> [chunkRows]");
+            System.exit(2);
+        }
+        int chunkRows = args.length == 3 ? Integer.parseInt(args[2]) : CatalogSnapshot.DEFAULT_CHUNK_ROWS;
+
+        long start = System.currentTimeMillis();
+        long count = convert(new File(args[0]), new File(args[1]), chunkRows);
+        System.out.println("Wrote " + count + " products to " + args[1]
+                + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    public static long convert(File json, File snapshot, int chunkRows) throws IOException, JSONException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(json),
+                StandardCharsets.UTF_8), 1 << 16);
+             CatalogSnapshot.Writer writer = new CatalogSnapshot.Writer(snapshot, chunkRows)) {
+            JSONTokener tokener = new JSONTokener(reader);
+            if (tokener.nextClean() != '[') {
+                throw tokener.syntaxError("Expected a JSON array of products");
+            }
+            if (tokener.nextClean() == ']') {
+                return 0;
+            }
+            tokener.back();
+            while (true) {
+                JSONObject row = (JSONObject) tokener.nextValue();
+                writer.add(new Product(row.getInt("id"), row.getString("name"), row.getString("category"),
+                        row.getDouble("price"), row.getInt("stock")));
+                char next = tokener.nextClean();
+                if (next == ']') {
+                    break;
+                }
+                if (next != ',') {
+                    throw tokener.syntaxError("Expected ',' or ']'");
+                }
+            }
+            return writer.getProductCount();
+        }
+    }
+}
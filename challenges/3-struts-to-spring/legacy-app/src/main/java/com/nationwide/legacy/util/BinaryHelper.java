@@ -0,0 +1,169 @@
+package com.nationwide.legacy.util;
+
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.ProductView;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary wire format for products (selected with format=binary)
+ *
+ * Layout (all numbers big-endian, as written by DataOutputStream):
+ *   int    magic   0x50524F44 ("PROD")
+ *   int    count   number of records that follow
+ *   count x record:
+ *     int    id
+ *     double price
+ *     int    stock
+ *     string name
+ *     string category
+ *
+ * A string is an int byte length (-1 for null, at most MAX_STRING_BYTES)
+ * followed by that many UTF-8 bytes. Single-product actions send a stream with one record and
+ * deleteProduct sends an empty stream, so one decoder handles every action.
+ *
+ * readProducts() is the client-side decoder for service consumers. It
+ * trusts neither the count nor the string lengths it reads: a short or
+ * forged stream fails with an IOException instead of a huge allocation.
+ * This class only depends on java.io and the model; actions send
+ * responses through BinaryResponses.
+ */
+public class BinaryHelper {
+
+    public static final String CONTENT_TYPE = "application/x-product-stream";
+
+    public static final int MAGIC = 0x50524F44;
+
+    /**
+     * Longest string a reader accepts; more than a form post can carry
+     */
+    public static final int MAX_STRING_BYTES = 8 << 20;
+
+    private static final int NULL_LENGTH = -1;
+
+    // Records pre-sized for in readProducts(); larger streams grow the list
+    private static final int MAX_PRESIZE = 1024;
+
+    private BinaryHelper() {
+    }
+
+    /**
+     * Encode a list of products onto an arbitrary stream
+     */
+    public static void writeProducts(List<Product> products, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        writeHeader(products.size(), out);
+        for (Product product : products) {
+            writeRecord(product, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Encode a stream holding the one product in the view
+     */
+    public static void writeProduct(ProductView product, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        writeHeader(1, out);
+        writeRecord(product, out);
+        out.flush();
+    }
+
+    /**
+     * Encode the stream header for count records that the caller writes next
+     */
+    public static void writeHeader(int count, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(count);
+    }
+
+    /**
+     * Encode one record (without the stream header)
+     */
+    public static void writeRecord(Product product, DataOutputStream out) throws IOException {
+        writeRecord(product.getId(), product.getPrice(), product.getStock(), product.getName(),
+                product.getCategory(), out);
+    }
+
+    /**
+     * Encode the product in a view as one record (without the stream header)
+     */
+    public static void writeRecord(ProductView product, DataOutputStream out) throws IOException {
+        writeRecord(product.getId(), product.getPrice(), product.getStock(), product.getName(),
+                product.getCategory(), out);
+    }
+
+    private static void writeRecord(int id, double price, int stock, String name, String category,
+                                    DataOutputStream out) throws IOException {
+        out.writeInt(id);
+        out.writeDouble(price);
+        out.writeInt(stock);
+        writeString(name, out);
+        writeString(category, out);
+    }
+
+    /**
+     * Decode a product stream produced by writeProducts()
+     */
+    public static List<Product> readProducts(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a product stream (bad magic 0x" + Integer.toHexString(magic) + ")");
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid record count: " + count);
+        }
+        List<Product> products = new ArrayList<>(Math.min(count, MAX_PRESIZE));
+        for (int i = 0; i < count; i++) {
+            products.add(readRecord(in));
+        }
+        return products;
+    }
+
+    /**
+     * Decode one record (without the stream header)
+     */
+    public static Product readRecord(DataInputStream in) throws IOException {
+        Product product = new Product();
+        product.setId(in.readInt());
+        product.setPrice(in.readDouble());
+        product.setStock(in.readInt());
+        product.setName(readString(in));
+        product.setCategory(readString(in));
+        return product;
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
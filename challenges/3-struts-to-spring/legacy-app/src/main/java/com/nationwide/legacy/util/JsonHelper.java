@@ -1,11 +1,15 @@
 package com.nationwide.legacy.util;
 
+import com.nationwide.legacy.dao.ProductBuffer;
 import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.ProductView;
+import com.nationwide.legacy.model.StockReservation;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Utility for JSON serialization - Legacy pattern
@@ -55,6 +59,25 @@ public class JsonHelper {
         return jsonArray.toString();
     }
 
+    /**
+     * Convert a product view to JSON string (same output as for the product)
+     */
+    public static String productToJson(ProductView product) throws JSONException {
+        return viewToJson(product).toString();
+    }
+
+    /**
+     * Convert the products in a buffer to JSON array string
+     */
+    public static String productsToJson(ProductBuffer products) throws JSONException {
+        JSONArray jsonArray = new JSONArray();
+        ProductView view = new ProductView();
+        for (int i = 0; i < products.size(); i++) {
+            jsonArray.put(viewToJson(products.view(i, view)));
+        }
+        return jsonArray.toString();
+    }
+
     /**
      * Convert product to JSON with pretty printing (for debugging)
      */
@@ -68,4 +91,39 @@ public class JsonHelper {
         // Problem: toString(2) for indentation - not standard
         return json.toString(2);
     }
+
+    private static JSONObject viewToJson(ProductView product) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("id", product.getId());
+        json.put("name", product.getName());
+        json.put("category", product.getCategory());
+        json.put("price", product.getPrice());
+        json.put("stock", product.getStock());
+        return json;
+    }
+
+    /**
+     * Convert a status map (values may be nested maps) to a JSON object string
+     */
+    public static String mapToJson(Map<String, ?> values) throws JSONException {
+        return new JSONObject(values).toString();
+    }
+
+    /**
+     * Convert a stock reservation to JSON string
+     */
+    public static String reservationToJson(StockReservation reservation) throws JSONException {
+        JSONArray lines = new JSONArray();
+        for (Map.Entry<Integer, Integer> line : reservation.getLines().entrySet()) {
+            JSONObject json = new JSONObject();
+            json.put("id", line.getKey().intValue());
+            json.put("quantity", line.getValue().intValue());
+            lines.put(json);
+        }
+        JSONObject json = new JSONObject();
+        json.put("reservationId", reservation.getId());
+        json.put("expiresAt", reservation.getExpiresAt());
+        json.put("lines", lines);
+        return json.toString();
+    }
 }
@@ -0,0 +1,214 @@
+package com.nationwide.legacy.web;
+
+import com.nationwide.legacy.admission.AdmissionController;
+import com.nationwide.legacy.admission.AdmissionLimiter;
+import com.nationwide.legacy.admission.AdmissionSettings;
+import org.apache.struts.action.ActionServlet;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRegistration;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Admission control in front of the Struts action servlet
+ *
+ * Each action path gets its own adaptive concurrency limit and wait queue
+ * (see AdmissionLimiter). Requests that cannot be admitted get an
+ * immediate 503 with a Retry-After header instead of piling up behind
+ * slow actions.
+ *
+ * Each setting is read from a system property first and then from the
+ * context-param of the same name in web.xml:
+ *
+ *   admission.enabled     false turns admission control off (default true)
+ *   admission.defaults    settings for paths without their own, e.g.
+ *                         "limit=20,max=200,queue=50,wait=100"
+ *   admission.<path>      settings for one action path, applied on top of
+ *                         the defaults, e.g. admission./listProducts
+ *   admission.exempt      comma-separated paths that are never limited
+ *   admission.retryAfter  Retry-After value in seconds (default 1)
+ *
+ * The settings keys are documented on AdmissionSettings.
+ *
+ * Only the action paths mapped in the Struts config (the "config"
+ * init-param of the action servlet) get their own limiter; requests for
+ * any other path share one limiter built from the defaults.
+ */
+public class AdmissionControlFilter implements Filter {
+
+    private static final String PATH_PREFIX = "admission./";
+    private static final String DEFAULT_STRUTS_CONFIG = "/WEB-INF/struts-config.xml";
+
+    private final AdmissionController controller = AdmissionController.getInstance();
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        ServletContext context = config.getServletContext();
+        if (!Boolean.parseBoolean(setting(context, "admission.enabled", "true"))) {
+            controller.disable();
+            context.log("Admission control disabled");
+            return;
+        }
+        try {
+            AdmissionSettings defaults = AdmissionSettings.DEFAULTS.with(setting(context, "admission.defaults", ""));
+            Map<String, AdmissionSettings> overrides = new HashMap<>();
+            for (String name : pathSettingNames(context)) {
+                overrides.put(name.substring("admission.".length()), defaults.with(setting(context, name, "")));
+            }
+            Set<String> exempt = new HashSet<>();
+            for (String path : setting(context, "admission.exempt", "").split(",")) {
+                if (!path.trim().isEmpty()) {
+                    exempt.add(path.trim());
+                }
+            }
+            int retryAfter = Integer.parseInt(setting(context, "admission.retryAfter", "1"));
+            Set<String> actionPaths = strutsActionPaths(context);
+            controller.configure(defaults, overrides, exempt, actionPaths, retryAfter);
+            context.log("Admission control enabled for " + actionPaths.size() + " action paths, "
+                    + overrides.size() + " with their own settings");
+        } catch (IllegalArgumentException e) {
+            throw new ServletException("Invalid admission control settings", e);
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        String path = actionPath((HttpServletRequest) request);
+        AdmissionLimiter limiter = controller.limiterFor(path);
+        if (limiter == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        boolean admitted;
+        try {
+            admitted = limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.setHeader("Retry-After", String.valueOf(controller.getRetryAfterSeconds()));
+            httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "Too many concurrent " + path + " requests");
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limiter.release(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        controller.disable();
+    }
+
+    private static String actionPath(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return path.endsWith(".do") ? path.substring(0, path.length() - 3) : path;
+    }
+
+    /**
+     * The action paths mapped in the Struts config files of the action servlet
+     */
+    static Set<String> strutsActionPaths(ServletContext context) throws ServletException {
+        Set<String> paths = new HashSet<>();
+        for (String resource : strutsConfigResources(context)) {
+            try (InputStream in = context.getResourceAsStream(resource)) {
+                if (in == null) {
+                    context.log("Admission control: Struts config " + resource + " not found");
+                    continue;
+                }
+                paths.addAll(actionPaths(in));
+            } catch (IOException | ParserConfigurationException | SAXException e) {
+                throw new ServletException("Cannot read action paths from " + resource, e);
+            }
+        }
+        return paths;
+    }
+
+    static Set<String> actionPaths(InputStream strutsConfig)
+            throws IOException, ParserConfigurationException, SAXException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        // The DTD only declares defaults we do not read; never fetch it
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        NodeList actions = factory.newDocumentBuilder().parse(strutsConfig).getElementsByTagName("action");
+        Set<String> paths = new HashSet<>();
+        for (int i = 0; i < actions.getLength(); i++) {
+            String path = ((Element) actions.item(i)).getAttribute("path");
+            if (!path.isEmpty()) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    private static List<String> strutsConfigResources(ServletContext context) {
+        String config = null;
+        for (ServletRegistration registration : context.getServletRegistrations().values()) {
+            if (ActionServlet.class.getName().equals(registration.getClassName())) {
+                config = registration.getInitParameter("config");
+            }
+        }
+        if (config == null || config.trim().isEmpty()) {
+            config = DEFAULT_STRUTS_CONFIG;
+        }
+        List<String> resources = new ArrayList<>();
+        for (String resource : config.split(",")) {
+            if (!resource.trim().isEmpty()) {
+                resources.add(resource.trim());
+            }
+        }
+        return resources;
+    }
+
+    private static Set<String> pathSettingNames(ServletContext context) {
+        Set<String> names = new HashSet<>();
+        for (String name : Collections.list(context.getInitParameterNames())) {
+            if (name.startsWith(PATH_PREFIX)) {
+                names.add(name);
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PATH_PREFIX)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static String setting(ServletContext context, String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isEmpty()) {
+            value = context.getInitParameter(name);
+        }
+        return value == null || value.isEmpty() ? defaultValue : value.trim();
+    }
+}
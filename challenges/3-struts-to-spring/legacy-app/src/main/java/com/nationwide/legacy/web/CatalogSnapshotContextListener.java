@@ -0,0 +1,52 @@
+package com.nationwide.legacy.web;
+
+import com.nationwide.legacy.dao.ProductDAO;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import java.io.File;
+
+/**
+ * Loads the product catalog from a CatalogSnapshot file at startup
+ *
+ * The file comes from the catalog.snapshot system property or the
+ * context-param of the same name; when neither is set the built-in seed
+ * data is kept. The load runs in the background and ready.do reports 503
+ * until it has finished. Configure it on the replication leader only -
+ * followers receive the catalog from the leader.
+ */
+public class CatalogSnapshotContextListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        String path = System.getProperty("catalog.snapshot");
+        if (path == null || path.isEmpty()) {
+            path = context.getInitParameter("catalog.snapshot");
+        }
+        if (path == null || path.trim().isEmpty()) {
+            return;
+        }
+
+        File file = new File(path.trim());
+        ProductDAO dao = ProductDAO.getInstance();
+        dao.markLoading();
+        Thread loader = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                dao.loadSnapshot(file);
+                context.log("Loaded " + dao.getProductCount() + " products from " + file
+                        + " in " + (System.currentTimeMillis() - start) + " ms");
+            } catch (Exception e) {
+                context.log("Could not load catalog snapshot " + file + "; staying not ready", e);
+            }
+        }, "catalog-snapshot-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.nationwide.legacy.web;
+
+import com.nationwide.legacy.dao.ProductDAO;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Stops the ProductDAO worker threads when the web application is undeployed
+ *
+ * Register it before the other listeners: they are destroyed in reverse
+ * order, so replication and the snapshot loader are gone by the time the
+ * store shuts down.
+ */
+public class ProductStoreContextListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        ProductDAO.getInstance().shutdown();
+    }
+}
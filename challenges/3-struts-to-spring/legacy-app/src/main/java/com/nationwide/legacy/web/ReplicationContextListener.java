@@ -0,0 +1,67 @@
+package com.nationwide.legacy.web;
+
+import com.nationwide.legacy.replication.ReplicationManager;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import java.io.IOException;
+
+/**
+ * Starts and stops product store replication with the web application
+ *
+ * Each setting is read from a system property first and then from the
+ * context-param of the same name in web.xml, so several instances can run
+ * from one WAR on localhost:
+ *
+ *   replication.role         standalone | leader | follower
+ *   replication.bind         leader listen address (default localhost)
+ *   replication.port         leader listen port (default 7400)
+ *   replication.leader       follower's leader address, host:port
+ *   replication.secret       shared secret, required for leader and follower
+ *   replication.logCapacity  mutations retained for catch-up (default 100000)
+ */
+public class ReplicationContextListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext context = event.getServletContext();
+        String role = setting(context, "replication.role", ReplicationManager.STANDALONE);
+        ReplicationManager manager = ReplicationManager.getInstance();
+        String secret = setting(context, "replication.secret", "");
+        if (!ReplicationManager.STANDALONE.equals(role) && secret.isEmpty()) {
+            throw new IllegalStateException("replication.secret is required for replication.role " + role);
+        }
+        try {
+            if (ReplicationManager.LEADER.equals(role)) {
+                String bind = setting(context, "replication.bind", "localhost");
+                int port = Integer.parseInt(setting(context, "replication.port", "7400"));
+                int capacity = Integer.parseInt(setting(context, "replication.logCapacity", "100000"));
+                manager.startLeader(bind, port, capacity, secret);
+            } else if (ReplicationManager.FOLLOWER.equals(role)) {
+                String leader = setting(context, "replication.leader", "localhost:7400");
+                int colon = leader.lastIndexOf(':');
+                manager.startFollower(leader.substring(0, colon), Integer.parseInt(leader.substring(colon + 1)),
+                        secret);
+            } else if (!ReplicationManager.STANDALONE.equals(role)) {
+                throw new IllegalStateException("Unknown replication.role: " + role);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start replication as " + role, e);
+        }
+        context.log("Product store replication role: " + role);
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        ReplicationManager.getInstance().stop();
+    }
+
+    private static String setting(ServletContext context, String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isEmpty()) {
+            value = context.getInitParameter(name);
+        }
+        return value == null || value.isEmpty() ? defaultValue : value.trim();
+    }
+}
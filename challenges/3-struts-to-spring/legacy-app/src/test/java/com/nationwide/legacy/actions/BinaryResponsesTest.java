@@ -0,0 +1,73 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.dao.ProductBuffer;
+import com.nationwide.legacy.dao.ProductDAO;
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.util.BinaryHelper;
+import com.nationwide.legacy.util.JsonHelper;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BinaryResponsesTest {
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private String contentType;
+
+    @Test
+    public void bufferEncodesLikeTheList() throws Exception {
+        ProductDAO dao = ProductDAO.getInstance();
+        ProductBuffer buffer = new ProductBuffer(1);
+        dao.getAllProducts(buffer);
+        List<Product> products = dao.getAllProducts();
+
+        BinaryResponses.writeProducts(buffer, response());
+        byte[] fromBuffer = body.toByteArray();
+        body.reset();
+        BinaryResponses.writeProducts(products, response());
+
+        assertEquals(BinaryHelper.CONTENT_TYPE, contentType);
+        assertArrayEquals(body.toByteArray(), fromBuffer);
+        assertEquals(JsonHelper.productsToJson(products),
+                JsonHelper.productsToJson(BinaryHelper.readProducts(new ByteArrayInputStream(fromBuffer))));
+    }
+
+    private HttpServletResponse response() {
+        ServletOutputStream stream = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setContentType":
+                            contentType = (String) args[0];
+                            return null;
+                        case "getOutputStream":
+                            return stream;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,54 @@
+package com.nationwide.legacy.actions;
+
+import com.nationwide.legacy.dao.CatalogLoadingException;
+import org.apache.struts.config.ExceptionConfig;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CatalogLoadingExceptionHandlerTest {
+
+    private final Map<String, String> headers = new HashMap<>();
+    private int status;
+
+    @Test
+    public void answers503WithTheConfiguredRetryAfter() throws Exception {
+        ExceptionConfig config = new ExceptionConfig();
+        config.setProperty("retryAfter", "7");
+
+        assertNull(new CatalogLoadingExceptionHandler().execute(new CatalogLoadingException(), config,
+                null, null, null, response()));
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, status);
+        assertEquals("7", headers.get("Retry-After"));
+    }
+
+    @Test
+    public void retryAfterHasADefault() throws Exception {
+        new CatalogLoadingExceptionHandler().execute(new CatalogLoadingException(), new ExceptionConfig(),
+                null, null, null, response());
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, status);
+        assertEquals(CatalogLoadingExceptionHandler.DEFAULT_RETRY_AFTER, headers.get("Retry-After"));
+    }
+
+    private HttpServletResponse response() {
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setHeader":
+                            headers.put((String) args[0], (String) args[1]);
+                            return null;
+                        case "sendError":
+                            status = (Integer) args[0];
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
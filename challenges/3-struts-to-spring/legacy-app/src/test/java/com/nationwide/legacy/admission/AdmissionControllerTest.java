@@ -0,0 +1,78 @@
+package com.nationwide.legacy.admission;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AdmissionControllerTest {
+
+    private final AdmissionController controller = AdmissionController.getInstance();
+
+    @Before
+    public void configure() {
+        AdmissionSettings defaults = AdmissionSettings.DEFAULTS;
+        controller.configure(defaults,
+                Collections.singletonMap("/searchProducts", defaults.with("limit=4,max=32")),
+                Collections.singleton("/ready"),
+                new HashSet<>(Arrays.asList("/listProducts", "/searchProducts", "/ready")),
+                1);
+    }
+
+    @After
+    public void disable() {
+        controller.disable();
+    }
+
+    @Test
+    public void mappedPathsGetTheirOwnLimiter() {
+        AdmissionLimiter list = controller.limiterFor("/listProducts");
+        AdmissionLimiter search = controller.limiterFor("/searchProducts");
+        assertNotNull(list);
+        assertNotNull(search);
+        assertNotSame(list, search);
+        assertSame(list, controller.limiterFor("/listProducts"));
+    }
+
+    @Test
+    public void exemptPathsAreNotLimited() {
+        assertNull(controller.limiterFor("/ready"));
+    }
+
+    @Test
+    public void unmappedPathsShareOneLimiter() {
+        AdmissionLimiter first = controller.limiterFor("/x1");
+        for (int i = 2; i <= 1000; i++) {
+            assertSame(first, controller.limiterFor("/x" + i));
+        }
+        assertNotSame(first, controller.limiterFor("/listProducts"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void statusListsOnlyMappedPathsAndTheSharedLimiter() {
+        for (int i = 0; i < 100; i++) {
+            controller.limiterFor("/probe" + i);
+        }
+        Map<String, Object> actions = (Map<String, Object>) controller.getStatus().get("actions");
+        assertEquals(new HashSet<>(Arrays.asList("/listProducts", "/searchProducts", AdmissionController.OTHER_PATHS)),
+                actions.keySet());
+    }
+
+    @Test
+    public void disabledControllerLimitsNothing() {
+        controller.disable();
+        assertNull(controller.limiterFor("/listProducts"));
+        assertNull(controller.limiterFor("/x1"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CatalogSnapshotLoadTest {
+
+    private static final int ROWS = 50000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ProductDAO dao = ProductDAO.getInstance();
+
+    @After
+    public void restoreSeedData() {
+        dao.setMutationListener(null);
+        dao.resetData();
+    }
+
+    @Test
+    public void writesDuringLoadFailFastAndLaterOnesGetFreshIds() throws Exception {
+        dao.resetData();
+        int seedCount = dao.getProductCount();
+        File file = writeSnapshot(ROWS);
+
+        dao.markLoading();
+        assertFalse(dao.isReady());
+        // Issued before the load starts, like a request racing startup
+        try {
+            dao.addProduct(new Product(0, "Added", "Tools", 1.0, 1));
+            fail("expected CatalogLoadingException");
+        } catch (CatalogLoadingException expected) {
+            // nothing was stored
+        }
+        try {
+            dao.deleteProduct(1);
+            fail("expected CatalogLoadingException");
+        } catch (CatalogLoadingException expected) {
+            // nothing was deleted
+        }
+        assertEquals(seedCount, dao.getProductCount());
+
+        AtomicBoolean loaded = new AtomicBoolean();
+        AtomicInteger partialReads = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!loaded.get()) {
+                int count = dao.getProductCount();
+                if (count != seedCount && count != ROWS) {
+                    partialReads.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        dao.loadSnapshot(file);
+        loaded.set(true);
+        reader.join();
+
+        assertTrue(dao.isReady());
+        assertEquals(0, partialReads.get());
+        assertEquals(ROWS, dao.getProductCount());
+        Product product = dao.addProduct(new Product(0, "Added", "Tools", 1.0, 1));
+        assertEquals(ROWS + 1, product.getId());
+        assertNotNull(dao.getProductById(1));
+    }
+
+    @Test
+    public void loadShipsOneResetAfterTheSwap() throws Exception {
+        File file = writeSnapshot(ROWS);
+        List<String> events = new ArrayList<>();
+        dao.setMutationListener(new ProductMutationListener() {
+            @Override
+            public void productStored(Product product) {
+                events.add("store " + product.getId());
+            }
+
+            @Override
+            public void productDeleted(int id) {
+                events.add("delete " + id);
+            }
+
+            @Override
+            public void catalogReset(List<Product> products) {
+                // A follower subscribing now gets a snapshot of the new catalog, not a partial one
+                events.add("reset " + products.size() + " over " + dao.getProductCount());
+            }
+        });
+
+        dao.markLoading();
+        dao.loadSnapshot(file);
+
+        assertEquals(Collections.singletonList("reset " + ROWS + " over " + ROWS), events);
+    }
+
+    @Test
+    public void drainWaitsForWritesInside() throws Exception {
+        WriteGate gate = new WriteGate();
+        gate.enter();
+        CountDownLatch drained = new CountDownLatch(1);
+        Thread loader = new Thread(() -> {
+            try {
+                gate.drain();
+                drained.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        loader.start();
+        assertFalse(drained.await(100, TimeUnit.MILLISECONDS));
+        try {
+            gate.enter();
+            fail("expected CatalogLoadingException");
+        } catch (CatalogLoadingException expected) {
+            // a refused write does not hold up the drain
+        }
+        gate.exit();
+        assertTrue(drained.await(10, TimeUnit.SECONDS));
+        gate.open();
+        gate.enter();
+        gate.exit();
+    }
+
+    @Test
+    public void failedLoadReleasesWrites() throws Exception {
+        dao.markLoading();
+        try {
+            dao.loadSnapshot(new File(folder.getRoot(), "missing.snapshot"));
+        } catch (IOException expected) {
+            // stays not ready
+        }
+        assertFalse(dao.isReady());
+        assertNotNull(dao.addProduct(new Product(0, "After failure", "Tools", 1.0, 1)));
+    }
+
+    private File writeSnapshot(int rows) throws Exception {
+        File file = folder.newFile("catalog.snapshot");
+        try (CatalogSnapshot.Writer writer = new CatalogSnapshot.Writer(file, 4096)) {
+            for (int i = 1; i <= rows; i++) {
+                writer.add(new Product(i, "Snapshot product " + i, "Category " + (i % 20), i / 100.0, i % 300));
+            }
+        }
+        return file;
+    }
+}
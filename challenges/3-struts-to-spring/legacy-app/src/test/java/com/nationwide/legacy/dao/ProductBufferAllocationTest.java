@@ -0,0 +1,123 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.ProductView;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Heap allocated per ProductDAO read in steady state, from the JVM's
+ * per-thread allocation counter (other threads do not disturb it)
+ *
+ * Reads into a ProductView or a ProductBuffer that has grown to size
+ * should allocate nothing; the list-returning reads are measured next to
+ * them so a broken counter cannot make the check pass by accident. The
+ * store scans on the calling thread: above the parallel threshold the
+ * buffer reads fork like the list ones.
+ */
+public class ProductBufferAllocationTest {
+
+    private static final int PRODUCTS = 20000;
+    private static final int CATEGORIES = 200;
+    private static final int ROUNDS = 2000;
+
+    private final ProductDAO dao = new ProductDAO(8, Integer.MAX_VALUE);
+    private com.sun.management.ThreadMXBean threads;
+    private final int[] ids = new int[256];
+    private final String[] categories = new String[256];
+
+    @Before
+    public void fillCatalog() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Random random = new Random(42);
+        for (int i = 0; i < PRODUCTS; i++) {
+            dao.addProduct(new Product(0, "Product " + i, "Category " + random.nextInt(CATEGORIES),
+                    1 + random.nextInt(100000) / 100.0, random.nextInt(500)));
+        }
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 1 + random.nextInt(dao.getProductCount());
+            categories[i] = "Category " + random.nextInt(CATEGORIES);
+        }
+    }
+
+    @After
+    public void shutdown() {
+        dao.shutdown();
+    }
+
+    @Test
+    public void pointLookupIntoViewDoesNotAllocate() {
+        ProductView view = new ProductView();
+        long[] checksum = new long[1];
+        Runnable lookups = () -> {
+            for (int i = 0; i < ROUNDS * 10; i++) {
+                if (dao.getProductById(ids[i & 255], view)) {
+                    checksum[0] += view.getStock();
+                }
+            }
+        };
+        lookups.run();
+        assertAlmostNoAllocation(allocatedBy(lookups), ROUNDS * 10);
+    }
+
+    @Test
+    public void categoryFilterIntoBufferDoesNotAllocate() {
+        ProductBuffer buffer = new ProductBuffer();
+        Runnable filters = () -> {
+            for (int i = 0; i < ROUNDS; i++) {
+                dao.getProductsByCategory(categories[i & 255], buffer);
+            }
+        };
+        filters.run();
+        assertAlmostNoAllocation(allocatedBy(filters), ROUNDS);
+
+        long listBytes = allocatedBy(() -> {
+            for (int i = 0; i < ROUNDS; i++) {
+                dao.getProductsByCategory(categories[i & 255]);
+            }
+        });
+        assertTrue("list filter allocated only " + listBytes + " bytes", listBytes > 100L * ROUNDS);
+    }
+
+    @Test
+    public void searchIntoBufferDoesNotAllocate() {
+        ProductBuffer buffer = ProductBuffer.pooled();
+        // Lower-case queries, so toLowerCase() returns the query itself
+        String[] queries = new String[8];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = "product 1" + i;
+        }
+        Runnable searches = () -> {
+            for (int i = 0; i < ROUNDS / 20; i++) {
+                dao.searchProducts(queries[i & 7], buffer);
+            }
+        };
+        searches.run();
+        assertAlmostNoAllocation(allocatedBy(searches), ROUNDS / 20);
+    }
+
+    private long allocatedBy(Runnable work) {
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        work.run();
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private static void assertAlmostNoAllocation(long bytes, int operations) {
+        // Allows for the odd allocation by the JIT or the counter itself
+        assertTrue(bytes + " bytes for " + operations + " reads", bytes < 4096);
+    }
+}
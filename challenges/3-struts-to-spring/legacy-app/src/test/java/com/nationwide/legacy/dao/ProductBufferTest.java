@@ -0,0 +1,119 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.ProductView;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The buffer and view variants of the ProductDAO reads return the same
+ * products, in the same order, as the list-returning ones
+ */
+public class ProductBufferTest {
+
+    private final ProductDAO dao = ProductDAO.getInstance();
+
+    @Before
+    public void addProducts() {
+        dao.resetData();
+        Random random = new Random(7);
+        String[] words = {"Widget", "GADGET", "lamp", "Desk", "smart", "Café"};
+        for (int i = 0; i < 2000; i++) {
+            dao.addProduct(new Product(0, words[random.nextInt(words.length)] + " " + i,
+                    "Category " + random.nextInt(20), random.nextInt(10000) / 100.0, random.nextInt(500)));
+        }
+    }
+
+    @After
+    public void restoreSeedData() {
+        dao.resetData();
+    }
+
+    @Test
+    public void viewReadsTheStoredProduct() {
+        ProductView view = new ProductView();
+        assertTrue(dao.getProductById(1, view));
+        assertEquals("Widget Pro", view.getName());
+        assertEquals(150, view.getStock());
+        assertFalse(dao.getProductById(-1, view));
+        assertTrue(view.isEmpty());
+    }
+
+    @Test
+    public void bufferReadsMatchListReads() {
+        ProductBuffer buffer = new ProductBuffer(1);
+
+        assertEquals(dao.getProductCount(), dao.getAllProducts(buffer));
+        assertSameProducts(dao.getAllProducts(), buffer);
+
+        for (String category : new String[] {"Category 3", "Tools", "Missing", "", null}) {
+            dao.getProductsByCategory(category, buffer);
+            assertSameProducts(dao.getProductsByCategory(category), buffer);
+        }
+        for (String query : new String[] {"widget", "Gadget 1", "CAFÉ", "lamp 19", "nothing", " ", null}) {
+            dao.searchProducts(query, buffer);
+            assertSameProducts(dao.searchProducts(query), buffer);
+        }
+        dao.rankedSearch("smart lamp", 10, false, buffer);
+        assertSameProducts(dao.rankedSearch("smart lamp", 10, false), buffer);
+    }
+
+    @Test
+    public void searchIgnoresCase() {
+        ProductBuffer buffer = new ProductBuffer();
+        int lower = dao.searchProducts("gadget", buffer);
+        assertTrue(lower > 0);
+        assertEquals(lower, dao.searchProducts("GaDgEt", buffer));
+    }
+
+    @Test
+    public void pooledBufferIsEmptiedForEachBorrow() {
+        ProductBuffer buffer = ProductBuffer.pooled();
+        dao.getAllProducts(buffer);
+        assertTrue(buffer.size() > 0);
+        assertSame(buffer, ProductBuffer.pooled());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void clearShrinksAnOversizedBuffer() {
+        ProductBuffer buffer = ProductBuffer.pooled();
+        dao.getAllProducts(buffer);
+        int grown = buffer.capacity();
+        assertTrue(grown > ProductBuffer.MAX_RETAINED_CAPACITY);
+        // Refilling through the DAO keeps the array
+        dao.searchProducts("widget", buffer);
+        assertEquals(grown, buffer.capacity());
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertTrue(buffer.capacity() <= ProductBuffer.MAX_RETAINED_CAPACITY);
+        assertTrue(ProductBuffer.pooled().capacity() <= ProductBuffer.MAX_RETAINED_CAPACITY);
+    }
+
+    @Test
+    public void pooledViewIsEmptiedForEachBorrow() {
+        ProductView view = ProductView.pooled();
+        assertTrue(dao.getProductById(1, view));
+        assertSame(view, ProductView.pooled());
+        assertTrue(view.isEmpty());
+    }
+
+    private static void assertSameProducts(List<Product> expected, ProductBuffer actual) {
+        assertEquals(expected.size(), actual.size());
+        ProductView view = new ProductView();
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.view(i, view).getId());
+        }
+        assertEquals(expected, actual.toList());
+    }
+}
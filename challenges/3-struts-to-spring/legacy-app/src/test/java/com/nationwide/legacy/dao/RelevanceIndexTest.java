@@ -0,0 +1,255 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RelevanceIndexTest {
+
+    private static final String[] WORDS = {
+        "widget", "gadget", "tool", "kit", "smart", "device", "basic", "pro", "max", "mini", "ultra", "deluxe",
+        "cable", "lamp", "chair"
+    };
+    private static final String[] CATEGORIES = {"Tools", "Electronics", "Home Office", "Garden Tools", "Toys"};
+
+    private final Map<Integer, Product> products = new HashMap<>();
+    private final RelevanceIndex index = new RelevanceIndex();
+
+    @Test
+    public void matchesBruteForceAfterSingleWrites() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            store(randomProduct(1 + random.nextInt(8000), random));
+        }
+        mutate(random, 5000);
+        assertMatchesBruteForce(random, 150);
+    }
+
+    @Test
+    public void matchesBruteForceAfterShuffledBulkLoads() {
+        Random random = new Random(11);
+        List<Product> rows = new ArrayList<>();
+        for (int id = 1; id <= 20000; id++) {
+            rows.add(randomProduct(id, random));
+        }
+        Collections.shuffle(rows, random);
+        // The same id twice in one load: the later text wins
+        rows.add(1000, randomProduct(rows.get(10).getId(), random));
+        for (int from = 0; from < rows.size(); from += 4096) {
+            List<Product> chunk = rows.subList(from, Math.min(rows.size(), from + 4096));
+            index.putAll(chunk);
+            for (Product product : chunk) {
+                products.put(product.getId(), product);
+            }
+        }
+        assertMatchesBruteForce(random, 100);
+        mutate(random, 3000);
+        assertMatchesBruteForce(random, 100);
+    }
+
+    @Test
+    public void matchesBruteForceAfterMergingFragments() {
+        Random random = new Random(19);
+        List<Product> rows = new ArrayList<>();
+        for (int id = 1; id <= 20000; id++) {
+            rows.add(randomProduct(id, random));
+        }
+        Collections.shuffle(rows, random);
+        // Ids repeated in later fragments: the later text wins
+        for (int i = 0; i < 500; i++) {
+            rows.add(randomProduct(1 + random.nextInt(20000), random));
+        }
+        List<RelevanceIndex.Fragment> fragments = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += 4096) {
+            fragments.add(index.fragment(rows.subList(from, Math.min(rows.size(), from + 4096))));
+        }
+        for (Product product : rows) {
+            products.put(product.getId(), product);
+        }
+        index.merge(fragments);
+        assertMatchesBruteForce(random, 100);
+        mutate(random, 3000);
+        assertMatchesBruteForce(random, 100);
+    }
+
+    @Test(timeout = 10000)
+    public void bulkLoadTimeDoesNotDependOnIdOrder() {
+        Random random = new Random(3);
+        List<Product> rows = new ArrayList<>();
+        for (int id = 1; id <= 100000; id++) {
+            rows.add(randomProduct(id, random));
+        }
+        RelevanceIndex ascending = new RelevanceIndex();
+        ascending.putAll(rows);
+        Collections.reverse(rows);
+        // Inserting each id in place took seconds here
+        RelevanceIndex descending = new RelevanceIndex();
+        descending.putAll(rows);
+        for (String query : new String[] {"smart lamp", "deluxe garden tools", "kit"}) {
+            assertEquals(ascending.search(query, 20, false), descending.search(query, 20, false));
+        }
+    }
+
+    @Test
+    public void fuzzyMatchingSkipsLongWords() {
+        String word32 = "abcdefghijklmnopqrstuvwxyzabcdef";
+        String word33 = word32 + "g";
+        store(new Product(1, word32, "Tools", 1.0, 1));
+        store(new Product(2, word33, "Tools", 1.0, 1));
+
+        assertEquals(Collections.singletonList(1), index.search(typo(word32), 5, true));
+        assertEquals(Collections.emptyList(), index.search(typo(word33), 5, true));
+        assertEquals(Collections.singletonList(2), index.search(word33, 5, true));
+    }
+
+    @Test
+    public void fuzzyMatchingExpandsOnlyTheFirstWords() {
+        store(new Product(1, "Widget", "Tools", 1.0, 1));
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < RelevanceIndex.MAX_FUZZY_TOKENS; i++) {
+            query.append("filler").append((char) ('a' + i)).append(' ');
+        }
+        assertEquals(Collections.singletonList(1), index.search("widgte", 5, true));
+        assertEquals(Collections.emptyList(), index.search(query + "widgte", 5, true));
+    }
+
+    @Test(timeout = 2000)
+    public void fuzzySearchForHugeWordsIsCheap() {
+        Random random = new Random(5);
+        for (int id = 1; id <= 1000; id++) {
+            store(randomProduct(id, random));
+        }
+        StringBuilder huge = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            huge.append((char) ('a' + random.nextInt(26)));
+        }
+        for (int i = 0; i < 20; i++) {
+            assertTrue(index.search(huge + " " + huge.reverse(), 5, true).isEmpty());
+        }
+    }
+
+    private void mutate(Random random, int writes) {
+        for (int i = 0; i < writes; i++) {
+            int id = 1 + random.nextInt(25000);
+            if (random.nextBoolean()) {
+                products.remove(id);
+                index.remove(id);
+            } else {
+                store(randomProduct(id, random));
+            }
+        }
+    }
+
+    private void store(Product product) {
+        products.put(product.getId(), product);
+        index.put(product);
+    }
+
+    private void assertMatchesBruteForce(Random random, int queries) {
+        BruteForce bruteForce = new BruteForce(products.values());
+        for (int q = 0; q < queries; q++) {
+            String query = WORDS[random.nextInt(WORDS.length)] + " "
+                    + (random.nextBoolean() ? WORDS[random.nextInt(WORDS.length)]
+                                            : CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            int limit = 1 + random.nextInt(30);
+            Map<Integer, Double> scores = bruteForce.scores(query);
+            List<Integer> expected = new ArrayList<>(scores.keySet());
+            expected.sort((a, b) -> {
+                int byScore = Double.compare(scores.get(b), scores.get(a));
+                return byScore != 0 ? byScore : Integer.compare(a, b);
+            });
+            expected = expected.subList(0, Math.min(limit, expected.size()));
+
+            List<Integer> actual = index.search(query, limit, false);
+            assertEquals(query, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                // Equal scores may be summed in a different order; compare scores, not ids
+                Double score = scores.get(actual.get(i));
+                assertTrue(query + " #" + i, score != null && Math.abs(score - scores.get(expected.get(i))) < 1e-9);
+            }
+        }
+    }
+
+    /**
+     * BM25 over every stored product, straight from the definition
+     */
+    private static final class BruteForce {
+        final Map<Integer, Map<String, Float>> frequencies = new HashMap<>();
+        final Map<Integer, Integer> lengths = new HashMap<>();
+        final Map<String, Integer> documentFrequency = new HashMap<>();
+        final double avgLength;
+
+        BruteForce(Collection<Product> products) {
+            double totalLength = 0;
+            for (Product product : products) {
+                Map<String, Float> weighted = new HashMap<>();
+                float total = 0;
+                for (String token : TextTokenizer.tokenize(product.getName())) {
+                    weighted.merge(token, 1f, Float::sum);
+                    total += 1f;
+                }
+                for (String token : TextTokenizer.tokenize(product.getCategory())) {
+                    weighted.merge(token, RelevanceIndex.CATEGORY_WEIGHT, Float::sum);
+                    total += RelevanceIndex.CATEGORY_WEIGHT;
+                }
+                int length = Math.max(1, Math.round(total));
+                totalLength += length;
+                frequencies.put(product.getId(), weighted);
+                lengths.put(product.getId(), length);
+                for (String term : weighted.keySet()) {
+                    documentFrequency.merge(term, 1, Integer::sum);
+                }
+            }
+            avgLength = totalLength / products.size();
+        }
+
+        Map<Integer, Double> scores(String query) {
+            Set<String> queryTerms = new LinkedHashSet<>(TextTokenizer.tokenize(query));
+            int count = frequencies.size();
+            Map<Integer, Double> scores = new HashMap<>();
+            for (Map.Entry<Integer, Map<String, Float>> product : frequencies.entrySet()) {
+                double score = 0;
+                boolean matched = false;
+                for (String term : queryTerms) {
+                    Float tf = product.getValue().get(term);
+                    if (tf == null) {
+                        continue;
+                    }
+                    matched = true;
+                    int df = documentFrequency.get(term);
+                    double idf = Math.log(1 + (count - df + 0.5) / (df + 0.5));
+                    score += idf * tf * 2.2 / (tf + 1.2 * (0.25 + 0.75 * lengths.get(product.getKey()) / avgLength));
+                }
+                if (matched) {
+                    scores.put(product.getKey(), score);
+                }
+            }
+            return scores;
+        }
+    }
+
+    private static Product randomProduct(int id, Random random) {
+        StringBuilder name = new StringBuilder();
+        int words = 1 + random.nextInt(4);
+        for (int i = 0; i < words; i++) {
+            name.append(i > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return new Product(id, name.toString(), CATEGORIES[random.nextInt(CATEGORIES.length)], 1.0, 1);
+    }
+
+    private static String typo(String word) {
+        return word.substring(0, 10) + word.charAt(11) + word.charAt(10) + word.substring(12);
+    }
+}
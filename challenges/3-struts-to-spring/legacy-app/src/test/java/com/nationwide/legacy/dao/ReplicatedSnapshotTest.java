@@ -0,0 +1,53 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReplicatedSnapshotTest {
+
+    private final ProductDAO dao = ProductDAO.getInstance();
+
+    @After
+    public void restoreSeedData() {
+        dao.resetData();
+    }
+
+    @Test
+    public void readsSeeOldOrNewCatalogDuringInstall() throws Exception {
+        dao.resetData();
+        int before = dao.getProductCount();
+        List<Product> snapshot = new ArrayList<>();
+        for (int i = 1; i <= 50000; i++) {
+            snapshot.add(new Product(i, "Replicated widget " + i, "Category " + (i % 50), i / 10.0, i % 100));
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger partialReads = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                int count = dao.getProductCount();
+                int ranked = dao.rankedSearch("widget", 10, false).size();
+                if ((count != before && count != snapshot.size()) || (count == snapshot.size() && ranked != 10)) {
+                    partialReads.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        dao.applyReplicatedSnapshot(snapshot);
+        done.set(true);
+        reader.join();
+
+        assertEquals(0, partialReads.get());
+        assertEquals(snapshot.size(), dao.getProductCount());
+        assertEquals("Replicated widget 7", dao.getProductById(7).getName());
+        assertEquals(1000, dao.getProductsByCategory("Category 3").size());
+    }
+}
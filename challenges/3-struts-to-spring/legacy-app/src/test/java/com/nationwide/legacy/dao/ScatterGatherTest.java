@@ -0,0 +1,180 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScatterGatherTest {
+
+    private static final String[] CATEGORIES = {"Tools", "Electronics", "Home Office", "Garden"};
+    private static final String[] WORDS = {"widget", "gadget", "kit", "lamp", "chair", "cable"};
+
+    // Same partitioning; one always scans on the caller, one always forks
+    private final ProductDAO sequential = new ProductDAO(7, Integer.MAX_VALUE);
+    private final ProductDAO parallel = new ProductDAO(7, 0);
+
+    @After
+    public void shutdown() {
+        sequential.shutdown();
+        parallel.shutdown();
+    }
+
+    @Test
+    public void partitionIndexIsStableAndBalanced() {
+        for (int count = 1; count <= 17; count++) {
+            int[] sizes = new int[count];
+            for (int id = 1; id <= 20000; id++) {
+                int index = ProductDAO.partitionIndex(id, count);
+                assertEquals(index, ProductDAO.partitionIndex(id, count));
+                sizes[index]++;
+            }
+            for (int size : sizes) {
+                // Sequential ids must not pile up in a few partitions
+                assertTrue("count " + count + ": " + size, Math.abs(size - 20000.0 / count) < 20000.0 / count / 4);
+            }
+        }
+        for (int id : new int[] {0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+            int index = ProductDAO.partitionIndex(id, 7);
+            assertTrue(index >= 0 && index < 7);
+        }
+    }
+
+    @Test
+    public void mergeInterleavesSortedSlices() {
+        Random random = new Random(5);
+        Comparator<Product> byPrice = Comparator.comparingDouble(Product::getPrice);
+        byPrice = byPrice.thenComparingInt(Product::getId);
+        List<List<Product>> slices = new ArrayList<>();
+        List<Product> all = new ArrayList<>();
+        int id = 1;
+        for (int s = 0; s < 9; s++) {
+            List<Product> slice = new ArrayList<>();
+            // Some slices stay empty
+            int size = s % 4 == 0 ? 0 : random.nextInt(300);
+            for (int i = 0; i < size; i++) {
+                slice.add(new Product(id++, "p", "c", random.nextInt(50), 1));
+            }
+            slice.sort(byPrice);
+            slices.add(slice);
+            all.addAll(slice);
+        }
+        all.sort(byPrice);
+        List<Product> merged = ProductDAO.merge(slices, byPrice);
+        assertEquals(all.size(), merged.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertSame(all.get(i), merged.get(i));
+        }
+        assertTrue(ProductDAO.merge(Collections.<List<Product>>emptyList(), byPrice).isEmpty());
+    }
+
+    @Test
+    public void parallelAndSequentialQueriesMatchAScan() {
+        Random random = new Random(17);
+        for (int i = 0; i < 5000; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            double price = random.nextInt(1000) / 4.0;
+            sequential.addProduct(new Product(0, name, category, price, i));
+            parallel.addProduct(new Product(0, name, category, price, i));
+        }
+        for (int i = 0; i < 500; i++) {
+            int id = 1 + random.nextInt(5005);
+            assertEquals(sequential.deleteProduct(id), parallel.deleteProduct(id));
+        }
+        List<Product> all = sequential.getAllProducts();
+        assertEquals(sequential.getProductCount(), all.size());
+
+        Comparator<Product> byPrice = Comparator.comparingDouble(Product::getPrice);
+        assertSameRows(scan(all, p -> true, Comparator.comparingInt(Product::getId)), parallel.getAllProducts());
+        assertSameRows(scan(all, p -> true, byPrice.thenComparingInt(Product::getId)),
+                parallel.getAllProducts(byPrice));
+        assertSameRows(scan(all, p -> true, byPrice.thenComparingInt(Product::getId)),
+                sequential.getAllProducts(byPrice));
+        for (String category : CATEGORIES) {
+            assertSameRows(scan(all, p -> p.getCategory().equals(category), Comparator.comparingInt(Product::getId)),
+                    parallel.getProductsByCategory(category));
+        }
+        for (String query : new String[] {"lamp", "GET K", "cable chair", "nothing"}) {
+            String lower = query.toLowerCase();
+            List<Product> matches = scan(all, p -> p.getName().toLowerCase().contains(lower),
+                    Comparator.comparingInt(Product::getId));
+            assertSameRows(matches, sequential.searchProducts(query));
+            assertSameRows(matches, parallel.searchProducts(query));
+        }
+    }
+
+    @Test
+    public void bufferQueriesForkAboveTheThreshold() {
+        Random random = new Random(23);
+        for (int i = 0; i < 3000; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + i;
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            sequential.addProduct(new Product(0, name, category, 1.0, i));
+            parallel.addProduct(new Product(0, name, category, 1.0, i));
+        }
+        ProductBuffer forked = new ProductBuffer(1);
+        ProductBuffer scanned = new ProductBuffer(1);
+
+        parallel.getAllProducts(forked);
+        sequential.getAllProducts(scanned);
+        assertSameRows(scanned.toList(), forked.toList());
+        for (String category : CATEGORIES) {
+            parallel.getProductsByCategory(category, forked);
+            sequential.getProductsByCategory(category, scanned);
+            assertSameRows(scanned.toList(), forked.toList());
+        }
+        for (String query : new String[] {"lamp", "Kit 2", "nothing", ""}) {
+            parallel.searchProducts(query, forked);
+            sequential.searchProducts(query, scanned);
+            assertSameRows(scanned.toList(), forked.toList());
+        }
+    }
+
+    @Test
+    public void shutdownStopsTheQueryPool() {
+        parallel.shutdown();
+        try {
+            parallel.getAllProducts();
+            fail("expected RejectedExecutionException");
+        } catch (RejectedExecutionException expected) {
+            // the pool no longer accepts scatter tasks
+        }
+    }
+
+    private static List<Product> scan(List<Product> all, Predicate<Product> filter, Comparator<Product> order) {
+        List<Product> result = new ArrayList<>();
+        for (Product product : all) {
+            if (filter.test(product)) {
+                result.add(product);
+            }
+        }
+        result.sort(order);
+        return result;
+    }
+
+    private static void assertSameRows(List<Product> expected, List<Product> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Product e = expected.get(i);
+            Product a = actual.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getCategory(), a.getCategory());
+            assertEquals(e.getPrice(), a.getPrice(), 0.0);
+            assertEquals(e.getStock(), a.getStock());
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.nationwide.legacy.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.StockReservation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StockAdjustmentTest {
+
+    private final ProductDAO dao = ProductDAO.getInstance();
+
+    @Before
+    @After
+    public void resetCatalog() {
+        dao.resetData();
+    }
+
+    @Test
+    public void overflowingBatchChangesNothing() throws Exception {
+        Map<Integer, Integer> deltas = new LinkedHashMap<>();
+        deltas.put(1, -10);
+        deltas.put(2, Integer.MAX_VALUE);
+        try {
+            dao.adjustStock(deltas);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals(150, dao.getProductById(1).getStock());
+            assertEquals(45, dao.getProductById(2).getStock());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void overflowingSingleAdjustmentIsRejected() throws Exception {
+        dao.adjustStock(3, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void unrepresentableDeltaIsRejectedUpFront() throws Exception {
+        Map<Integer, Integer> deltas = new LinkedHashMap<>();
+        deltas.put(1, 5);
+        deltas.put(2, Integer.MIN_VALUE);
+        try {
+            dao.adjustStock(deltas);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals(150, dao.getProductById(1).getStock());
+            assertEquals(45, dao.getProductById(2).getStock());
+        }
+    }
+
+    @Test
+    public void shortfallRollsBackEarlierLines() throws Exception {
+        Map<Integer, Integer> deltas = new LinkedHashMap<>();
+        deltas.put(1, -10);
+        deltas.put(2, 5);
+        deltas.put(3, -81);
+        try {
+            dao.adjustStock(deltas);
+            fail("expected InsufficientStockException");
+        } catch (InsufficientStockException e) {
+            assertEquals(3, e.getProductId());
+            assertEquals(150, dao.getProductById(1).getStock());
+            assertEquals(45, dao.getProductById(2).getStock());
+            assertEquals(80, dao.getProductById(3).getStock());
+        }
+    }
+
+    @Test
+    public void batchAppliesEveryLine() throws Exception {
+        Map<Integer, Integer> deltas = new LinkedHashMap<>();
+        deltas.put(1, -10);
+        deltas.put(2, 5);
+        assertEquals(2, dao.adjustStock(deltas).size());
+        assertEquals(140, dao.getProductById(1).getStock());
+        assertEquals(50, dao.getProductById(2).getStock());
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentAdjustmentsAndReservationsLoseNoUpdates() throws Exception {
+        int threads = 8;
+        int rounds = 2000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> taken = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                taken.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    int net = 0;
+                    for (int i = 0; i < rounds; i++) {
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                dao.adjustStock(5, 3);
+                                net -= 3;
+                                break;
+                            case 1:
+                                if (tryTake(5, 2)) {
+                                    net += 2;
+                                }
+                                break;
+                            case 2: {
+                                StockReservation reservation = tryReserve(5, 1);
+                                if (reservation != null) {
+                                    assertTrue(dao.cancelReservation(reservation.getId()));
+                                }
+                                break;
+                            }
+                            default: {
+                                StockReservation reservation = tryReserve(5, 1);
+                                if (reservation != null) {
+                                    assertTrue(dao.confirmReservation(reservation.getId()));
+                                    net += 1;
+                                }
+                                break;
+                            }
+                        }
+                    }
+                    return net;
+                }));
+            }
+            int net = 0;
+            for (Future<Integer> future : taken) {
+                net += future.get();
+            }
+            assertEquals(200 - net, dao.getProductById(5).getStock());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void stockOrderIsSortedWhileStockChanges() throws Exception {
+        for (int i = 0; i < 3000; i++) {
+            dao.addProduct(new Product(0, "Bulk " + i, "Bulk", 1.0, i % 50));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> writer = pool.submit((Callable<Void>) () -> {
+            Random random = new Random(1);
+            int count = dao.getProductCount();
+            while (running.get()) {
+                tryTake(1 + random.nextInt(count), random.nextBoolean() ? -40 : random.nextInt(40));
+            }
+            return null;
+        });
+        try {
+            Comparator<Product> byStock = Comparator.comparingInt(Product::getStock);
+            for (int i = 0; i < 50; i++) {
+                List<Product> sorted = dao.getAllProducts(byStock);
+                assertEquals(dao.getProductCount(), sorted.size());
+                for (int k = 1; k < sorted.size(); k++) {
+                    assertTrue("unsorted at " + k, sorted.get(k - 1).getStock() <= sorted.get(k).getStock());
+                }
+            }
+        } finally {
+            running.set(false);
+            pool.shutdown();
+            pool.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        writer.get();
+    }
+
+    private boolean tryTake(int id, int units) {
+        try {
+            dao.adjustStock(id, -units);
+            return true;
+        } catch (InsufficientStockException e) {
+            return false;
+        }
+    }
+
+    private StockReservation tryReserve(int id, int units) {
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        lines.put(id, units);
+        try {
+            return dao.reserveStock(lines, 60000);
+        } catch (InsufficientStockException e) {
+            return null;
+        }
+    }
+}
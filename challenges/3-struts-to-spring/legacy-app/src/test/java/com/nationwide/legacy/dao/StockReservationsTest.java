@@ -0,0 +1,94 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.StockReservation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StockReservationsTest {
+
+    private final ProductDAO dao = ProductDAO.getInstance();
+
+    @Before
+    @After
+    public void resetCatalog() {
+        dao.resetData();
+    }
+
+    @Test
+    public void confirmKeepsTheUnitsOut() throws Exception {
+        StockReservation reservation = dao.reserveStock(lines(1, 10, 3, 5), 60000);
+        assertEquals(140, dao.getProductById(1).getStock());
+        assertEquals(75, dao.getProductById(3).getStock());
+
+        assertTrue(dao.confirmReservation(reservation.getId()));
+        assertFalse(dao.confirmReservation(reservation.getId()));
+        assertFalse(dao.cancelReservation(reservation.getId()));
+        assertEquals(140, dao.getProductById(1).getStock());
+        assertEquals(75, dao.getProductById(3).getStock());
+    }
+
+    @Test
+    public void cancelReturnsTheUnitsOnce() throws Exception {
+        StockReservation reservation = dao.reserveStock(lines(1, 10, 3, 5), 60000);
+
+        assertTrue(dao.cancelReservation(reservation.getId()));
+        assertFalse(dao.cancelReservation(reservation.getId()));
+        assertFalse(dao.confirmReservation(reservation.getId()));
+        assertEquals(150, dao.getProductById(1).getStock());
+        assertEquals(80, dao.getProductById(3).getStock());
+    }
+
+    @Test
+    public void confirmAfterExpiryFailsAndRestocks() throws Exception {
+        StockReservation reservation = dao.reserveStock(lines(2, 5), 1);
+        Thread.sleep(20);
+
+        assertFalse(dao.confirmReservation(reservation.getId()));
+        assertEquals(45, dao.getProductById(2).getStock());
+        assertFalse(dao.cancelReservation(reservation.getId()));
+        assertEquals(45, dao.getProductById(2).getStock());
+    }
+
+    @Test(timeout = 10000)
+    public void sweeperReleasesExpiredReservations() throws Exception {
+        StockReservation expiring = dao.reserveStock(lines(4, 7), 50);
+        StockReservation held = dao.reserveStock(lines(4, 3), 60000);
+        assertEquals(20, dao.getProductById(4).getStock());
+
+        while (dao.getProductById(4).getStock() != 27) {
+            Thread.sleep(50);
+        }
+        assertFalse(dao.cancelReservation(expiring.getId()));
+        assertTrue(dao.confirmReservation(held.getId()));
+        assertEquals(27, dao.getProductById(4).getStock());
+    }
+
+    @Test
+    public void shortfallReservesNothing() throws Exception {
+        try {
+            dao.reserveStock(lines(1, 10, 4, 31), 60000);
+            fail("expected InsufficientStockException");
+        } catch (InsufficientStockException e) {
+            assertEquals(4, e.getProductId());
+        }
+        assertEquals(150, dao.getProductById(1).getStock());
+        assertEquals(30, dao.getProductById(4).getStock());
+    }
+
+    private static Map<Integer, Integer> lines(int... idQuantityPairs) {
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        for (int i = 0; i < idQuantityPairs.length; i += 2) {
+            lines.put(idQuantityPairs[i], idQuantityPairs[i + 1]);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,256 @@
+package com.nationwide.legacy.dao;
+
+import com.nationwide.legacy.model.Product;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TypeaheadIndexTest {
+
+    // "smart" is common, so multi-word inputs take both lookup paths
+    private static final String[] WORDS = {
+        "smart", "smart", "smart", "smart", "smartphone", "small", "widget", "wide", "lamp", "desk", "deluxe", "tool", "tools", "cable", "s"
+    };
+    private static final int CACHE_SIZE = 8;
+
+    private final Map<Integer, Product> products = new ConcurrentHashMap<>();
+    private final TypeaheadIndex index = new TypeaheadIndex(CACHE_SIZE, Product::getStock, products::get);
+
+    @Test
+    public void matchesBruteForceUnderMutations() {
+        Random random = new Random(7);
+        for (int i = 1; i <= 3000; i++) {
+            store(new Product(i, randomName(random), "C", 1.0, random.nextInt(50)));
+        }
+        String[] queries = {"s", "sm", "smart", "smart w", "smart wid", "desk l", "deluxe desk t", "tools s",
+            "widget widget", "cable smartphone d", "smart del", "deluxe smart", "nosuch w", "smart nosuch"};
+        for (int round = 0; round < 40; round++) {
+            int id = 1 + random.nextInt(3500);
+            switch (random.nextInt(4)) {
+                case 0:
+                    products.remove(id);
+                    index.remove(id);
+                    break;
+                case 1:
+                    Product product = products.get(id);
+                    if (product != null) {
+                        product.setStock(random.nextInt(50));
+                        index.scoreChanged(id);
+                    }
+                    break;
+                default:
+                    store(new Product(id, randomName(random), "C", 1.0, random.nextInt(50)));
+                    break;
+            }
+            for (String query : queries) {
+                for (int limit : new int[] {1, 5, CACHE_SIZE, 50}) {
+                    assertEquals(query + " limit " + limit, bruteForce(query, limit), index.lookup(query, limit));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void mergedFragmentsMatchBruteForce() {
+        Random random = new Random(13);
+        List<Product> rows = new ArrayList<>();
+        for (int i = 1; i <= 4000; i++) {
+            rows.add(new Product(i, randomName(random), "C", 1.0, random.nextInt(50)));
+        }
+        Collections.shuffle(rows, random);
+        // Later rows for ids already given replace them
+        for (int i = 0; i < 300; i++) {
+            rows.add(new Product(1 + random.nextInt(4000), randomName(random), "C", 1.0, random.nextInt(50)));
+        }
+        List<TypeaheadIndex.Fragment> fragments = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += 500) {
+            fragments.add(index.fragment(rows.subList(from, Math.min(rows.size(), from + 500))));
+        }
+        for (Product product : rows) {
+            products.put(product.getId(), product);
+        }
+        index.merge(fragments);
+
+        String[] queries = {"s", "sm", "smart", "smart w", "desk l", "deluxe desk t", "tools s", "cable smartphone d"};
+        for (int round = 0; round < 2; round++) {
+            for (String query : queries) {
+                assertEquals(query, bruteForce(query, CACHE_SIZE), index.lookup(query, CACHE_SIZE));
+            }
+            // Ordinary writes keep working on a merged index
+            for (int i = 0; i < 200; i++) {
+                int id = 1 + random.nextInt(4000);
+                if (random.nextBoolean()) {
+                    products.remove(id);
+                    index.remove(id);
+                } else {
+                    store(new Product(id, randomName(random), "C", 1.0, random.nextInt(50)));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void mergeOnlyFillsAnEmptyIndex() {
+        store(new Product(1, "Widget", "C", 1.0, 1));
+        index.merge(Collections.singletonList(index.fragment(Collections.singletonList(
+                new Product(2, "Lamp", "C", 1.0, 1)))));
+    }
+
+    @Test
+    public void limitIsCappedAtCacheSize() {
+        for (int i = 1; i <= 100; i++) {
+            store(new Product(i, "Widget " + i, "C", 1.0, i));
+        }
+        assertEquals(CACHE_SIZE, index.lookup("wid", 100).size());
+        assertEquals(CACHE_SIZE, index.lookup("widget 1", 100).size());
+    }
+
+    @Test(timeout = 10000)
+    public void lookupsDoNotWaitForWriters() throws Exception {
+        CountDownLatch resolving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TypeaheadIndex blocking = new TypeaheadIndex(CACHE_SIZE, Product::getStock, id -> {
+            resolving.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return products.get(id);
+        });
+        for (int i = 1; i <= 20; i++) {
+            Product product = new Product(i, "Widget " + i, "C", 1.0, i);
+            products.put(i, product);
+            blocking.put(product);
+        }
+        blocking.scoreChanged(3);
+        // The writer re-scores id 3 and stalls in the resolver with the lock held
+        Thread writer = new Thread(() -> blocking.put(new Product(21, "Lamp", "C", 1.0, 1)));
+        writer.start();
+        try {
+            assertTrue(resolving.await(5, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(20, 19, 18), blocking.lookup("wid", 3));
+            assertEquals(Collections.singletonList(20), blocking.lookup("widget 20", 3));
+        } finally {
+            release.countDown();
+            writer.join();
+        }
+        assertEquals(Collections.singletonList(21), blocking.lookup("lamp", 3));
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentLookupsSeeConsistentResults() throws Exception {
+        Random random = new Random(3);
+        for (int i = 1; i <= 2000; i++) {
+            store(new Product(i, randomName(random), "C", 1.0, random.nextInt(50)));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(3);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            String[] queries = {"s", "smart", "smart w", "desk l", "tools s", "smart del"};
+            for (int r = 0; r < 3; r++) {
+                results.add(readers.submit(() -> {
+                    while (running.get()) {
+                        for (String query : queries) {
+                            List<Integer> ids = index.lookup(query, CACHE_SIZE);
+                            assertTrue(ids.size() <= CACHE_SIZE);
+                            assertEquals(query + " " + ids, ids.size(), new HashSet<>(ids).size());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < 20000; i++) {
+                int id = 1 + random.nextInt(2500);
+                if (random.nextInt(3) == 0) {
+                    products.remove(id);
+                    index.remove(id);
+                } else if (products.containsKey(id) && random.nextBoolean()) {
+                    products.get(id).setStock(random.nextInt(50));
+                    index.scoreChanged(id);
+                } else {
+                    store(new Product(id, randomName(random), "C", 1.0, random.nextInt(50)));
+                }
+            }
+        } finally {
+            running.set(false);
+            readers.shutdown();
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        for (String query : new String[] {"s", "smart w", "deluxe desk t", "cable smartphone d"}) {
+            assertEquals(query, bruteForce(query, CACHE_SIZE), index.lookup(query, CACHE_SIZE));
+        }
+    }
+
+    @Test
+    public void multiWordScanStopsAtTheBudget() {
+        int id = 1;
+        for (int i = 0; i < 2 * TypeaheadIndex.SCAN_BUDGET; i++) {
+            store(new Product(id++, "Alpha Beta", "C", 1.0, 100));
+            store(new Product(id++, "Gamma Delta", "C", 1.0, 100));
+        }
+        // The only match ranks behind every "alpha" posting
+        int buried = id++;
+        store(new Product(buried, "Alpha Delta", "C", 1.0, 0));
+        assertEquals(Collections.emptyList(), index.lookup("alpha d", 5));
+
+        int ranked = id;
+        store(new Product(ranked, "Alpha Delta", "C", 1.0, 1000));
+        assertEquals(Collections.singletonList(ranked), index.lookup("alpha d", 5));
+    }
+
+    private void store(Product product) {
+        products.put(product.getId(), product);
+        index.put(product);
+    }
+
+    private List<Integer> bruteForce(String input, int limit) {
+        List<String> tokens = TextTokenizer.tokenize(input);
+        String last = tokens.get(tokens.size() - 1);
+        List<Product> matches = new ArrayList<>();
+        for (Product product : products.values()) {
+            List<String> terms = TextTokenizer.tokenize(product.getName());
+            boolean prefixMatch = false;
+            for (String term : terms) {
+                prefixMatch |= term.startsWith(last);
+            }
+            if (prefixMatch && terms.containsAll(tokens.subList(0, tokens.size() - 1))) {
+                matches.add(product);
+            }
+        }
+        matches.sort(Comparator.comparingInt(Product::getStock).reversed().thenComparingInt(Product::getId));
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < matches.size() && i < Math.min(limit, CACHE_SIZE); i++) {
+            ids.add(matches.get(i).getId());
+        }
+        return ids;
+    }
+
+    private static String randomName(Random random) {
+        String[] words = new String[1 + random.nextInt(4)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = WORDS[random.nextInt(WORDS.length)];
+        }
+        return String.join(" ", Arrays.asList(words));
+    }
+}
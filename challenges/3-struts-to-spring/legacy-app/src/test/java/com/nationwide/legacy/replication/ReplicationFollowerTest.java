@@ -0,0 +1,335 @@
+package com.nationwide.legacy.replication;
+
+import com.nationwide.legacy.dao.CatalogLoadingException;
+import com.nationwide.legacy.dao.ProductDAO;
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.util.BinaryHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReplicationFollowerTest {
+
+    private static final String SECRET = "test-secret";
+    private static final long EPOCH = 41;
+
+    private ProductDAO dao;
+    private ScriptedLeader leader;
+    private ReplicationFollower follower;
+
+    @Before
+    public void setUp() throws IOException {
+        dao = ProductDAO.getInstance();
+        dao.resetData();
+        leader = new ScriptedLeader();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (follower != null) {
+            follower.stop();
+        }
+        leader.close();
+        dao.resetData();
+    }
+
+    @Test(timeout = 20000)
+    public void resetEntryIsInstalledInOneStep() throws Exception {
+        List<Product> rows = rows(3000);
+        CountDownLatch subscribed = new CountDownLatch(1);
+        CountDownLatch sendReset = new CountDownLatch(1);
+        leader.onSubscribe = out -> {
+            sendSnapshot(out, EPOCH, 0, seedRows());
+            subscribed.countDown();
+            await(sendReset);
+            out.writeByte(ReplicationProtocol.ENTRIES);
+            out.writeLong(1);
+            out.writeInt(1);
+            Mutation.reset(1, rows).write(out);
+            out.flush();
+        };
+        startFollower();
+        assertTrue(subscribed.await(10, TimeUnit.SECONDS));
+        awaitApplied(EPOCH, 0);
+
+        // Counts between the old catalog and the new one would mean the reset
+        // was published before all of its rows were stored
+        Set<Integer> counts = new ConcurrentSkipListSet<>();
+        AtomicBoolean watching = new AtomicBoolean(true);
+        Thread watcher = new Thread(() -> {
+            while (watching.get()) {
+                counts.add(dao.getProductCount());
+            }
+        });
+        watcher.start();
+        sendReset.countDown();
+        awaitApplied(EPOCH, 1);
+        watching.set(false);
+        watcher.join();
+
+        assertEquals(3000, dao.getProductCount());
+        for (int count : counts) {
+            assertTrue("saw " + count + " products", count == 5 || count == 3000);
+        }
+        assertEquals("Row 1234", dao.getProductById(1234).getName());
+    }
+
+    @Test(timeout = 20000)
+    public void forwardedWritesReuseOneConnection() throws Exception {
+        leader.onSubscribe = out -> {
+            sendSnapshot(out, EPOCH, 0, seedRows());
+            // Keep the stream open; the follower times out after 3 missed heartbeats
+            Thread.sleep(ReplicationProtocol.HEARTBEAT_MILLIS * 10);
+        };
+        leader.onWrite = (op, in, out) -> {
+            assertEquals(ReplicationProtocol.DELETE, op);
+            in.readInt();
+            replyOk(out, EPOCH, 0);
+        };
+        startFollower();
+        awaitApplied(EPOCH, 0);
+
+        for (int id = 1; id <= 5; id++) {
+            assertTrue(follower.deleteProduct(id));
+        }
+        assertEquals(1, leader.writeConnections.get());
+        assertEquals(5, leader.writes.get());
+    }
+
+    @Test(timeout = 20000)
+    public void writeToARestartedLeaderWaitsForItsSnapshot() throws Exception {
+        long restartedEpoch = EPOCH + 1;
+        CountDownLatch written = new CountDownLatch(1);
+        leader.onSubscribe = out -> {
+            sendSnapshot(out, EPOCH, 7, seedRows());
+            await(written);
+            // The follower only learns about the new epoch a little later
+            Thread.sleep(300);
+            List<Product> rows = seedRows();
+            rows.add(new Product(6, "Written", "Tools", 1.0, 1));
+            sendSnapshot(out, restartedEpoch, 2, rows);
+            Thread.sleep(ReplicationProtocol.HEARTBEAT_MILLIS * 10);
+        };
+        leader.onWrite = (op, in, out) -> {
+            Product added = BinaryHelper.readRecord(in);
+            added.setId(6);
+            // A lower seq than the follower has applied, but from the new epoch
+            replyOk(out, restartedEpoch, 2);
+            BinaryHelper.writeRecord(added, out);
+            out.flush();
+            written.countDown();
+        };
+        startFollower();
+        awaitApplied(EPOCH, 7);
+
+        Product added = follower.addProduct(new Product(0, "Written", "Tools", 1.0, 1));
+        assertEquals(6, added.getId());
+        assertNotNull(dao.getProductById(6));
+        assertEquals(restartedEpoch, follower.getStatus().get("epoch"));
+    }
+
+    @Test(timeout = 20000)
+    public void failedWriteIsNotResent() throws Exception {
+        leader.onSubscribe = out -> {
+            sendSnapshot(out, EPOCH, 0, seedRows());
+            Thread.sleep(ReplicationProtocol.HEARTBEAT_MILLIS * 10);
+        };
+        leader.onWrite = (op, in, out) -> {
+            in.readInt();
+            throw new IOException("leader went away mid-write");
+        };
+        startFollower();
+        awaitApplied(EPOCH, 0);
+
+        try {
+            follower.deleteProduct(1);
+            fail("expected UncheckedIOException");
+        } catch (UncheckedIOException expected) {
+            // reported to the caller
+        }
+        assertEquals(1, leader.writes.get());
+        assertEquals(1, leader.writeConnections.get());
+    }
+
+    @Test(timeout = 20000)
+    public void loadingLeaderTurnsTheWriteAway() throws Exception {
+        leader.onSubscribe = out -> {
+            sendSnapshot(out, EPOCH, 0, seedRows());
+            Thread.sleep(ReplicationProtocol.HEARTBEAT_MILLIS * 10);
+        };
+        AtomicBoolean loading = new AtomicBoolean(true);
+        leader.onWrite = (op, in, out) -> {
+            in.readInt();
+            if (loading.getAndSet(false)) {
+                out.writeByte(ReplicationProtocol.LOADING);
+                out.writeLong(EPOCH);
+                out.writeLong(0);
+                out.flush();
+            } else {
+                replyOk(out, EPOCH, 0);
+            }
+        };
+        startFollower();
+        awaitApplied(EPOCH, 0);
+
+        try {
+            follower.deleteProduct(1);
+            fail("expected CatalogLoadingException");
+        } catch (CatalogLoadingException expected) {
+            // the caller retries later
+        }
+        assertTrue(follower.deleteProduct(1));
+        // The refusal is a normal reply; the connection stays in use
+        assertEquals(1, leader.writeConnections.get());
+    }
+
+    private void startFollower() {
+        follower = new ReplicationFollower(dao, "localhost", leader.server.getLocalPort(), SECRET);
+        follower.start();
+    }
+
+    private void awaitApplied(long epoch, long seq) throws InterruptedException {
+        while (!Long.valueOf(epoch).equals(follower.getStatus().get("epoch"))
+                || (Long) follower.getStatus().get("appliedSeq") < seq) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static void sendSnapshot(DataOutputStream out, long epoch, long seq, List<Product> products)
+            throws IOException {
+        out.writeByte(ReplicationProtocol.SNAPSHOT);
+        out.writeLong(epoch);
+        out.writeLong(seq);
+        out.writeInt(products.size());
+        for (Product product : products) {
+            BinaryHelper.writeRecord(product, out);
+        }
+        out.flush();
+    }
+
+    private static void replyOk(DataOutputStream out, long epoch, long seq) throws IOException {
+        out.writeByte(ReplicationProtocol.OK);
+        out.writeLong(epoch);
+        out.writeLong(seq);
+        out.flush();
+    }
+
+    private static void await(CountDownLatch latch) throws InterruptedException {
+        if (!latch.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("test script stalled");
+        }
+    }
+
+    private static List<Product> seedRows() {
+        List<Product> rows = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) {
+            rows.add(new Product(id, "Seed " + id, "Tools", 1.0, 10));
+        }
+        return rows;
+    }
+
+    private static List<Product> rows(int count) {
+        List<Product> rows = new ArrayList<>();
+        for (int id = 1; id <= count; id++) {
+            rows.add(new Product(id, "Row " + id, "Tools", 1.0, id));
+        }
+        Collections.shuffle(rows);
+        return rows;
+    }
+
+    private interface SubscribeScript {
+        void run(DataOutputStream out) throws Exception;
+    }
+
+    private interface WriteScript {
+        void run(byte op, DataInputStream in, DataOutputStream out) throws Exception;
+    }
+
+    /**
+     * Accepts follower connections and answers them from the test's scripts
+     */
+    private static final class ScriptedLeader {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final AtomicInteger writeConnections = new AtomicInteger();
+        final AtomicInteger writes = new AtomicInteger();
+        volatile SubscribeScript onSubscribe = out -> Thread.sleep(Long.MAX_VALUE);
+        volatile WriteScript onWrite = (op, in, out) -> {
+            throw new IOException("unexpected write");
+        };
+        private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+
+        ScriptedLeader() throws IOException {
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket socket = server.accept();
+                        sockets.add(socket);
+                        Thread handler = new Thread(() -> handle(socket));
+                        handler.setDaemon(true);
+                        handler.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private void handle(Socket socket) {
+            try (Socket s = socket) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                if (!ReplicationProtocol.authenticateFollower(ReplicationProtocol.secretBytes(SECRET), in, out)) {
+                    return;
+                }
+                if (in.readByte() == ReplicationProtocol.SUBSCRIBE) {
+                    in.readLong();
+                    in.readLong();
+                    onSubscribe.run(out);
+                } else {
+                    writeConnections.incrementAndGet();
+                    for (int op = in.read(); op >= 0; op = in.read()) {
+                        writes.incrementAndGet();
+                        onWrite.run((byte) op, in, out);
+                    }
+                }
+            } catch (Exception e) {
+                // connection ends with the script
+            }
+        }
+
+        void close() throws IOException {
+            server.close();
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.nationwide.legacy.replication;
+
+import com.nationwide.legacy.dao.ProductDAO;
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.util.BinaryHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReplicationLeaderTest {
+
+    private static final String SECRET = "test-secret";
+
+    private ProductDAO dao;
+    private ReplicationLeader leader;
+    private InetSocketAddress address;
+
+    @Before
+    public void startLeader() throws IOException {
+        dao = ProductDAO.getInstance();
+        dao.resetData();
+        leader = new ReplicationLeader(dao, "localhost", 0, 1000, SECRET);
+        leader.start();
+        address = leader.getListenAddress();
+    }
+
+    @After
+    public void stopLeader() {
+        leader.stop();
+        dao.resetData();
+    }
+
+    @Test
+    public void listensOnLoopbackByDefault() {
+        assertTrue(address.getAddress().isLoopbackAddress());
+    }
+
+    @Test
+    public void authenticatedWritesShareAConnection() throws IOException {
+        try (Socket socket = connect()) {
+            DataInputStream in = input(socket);
+            DataOutputStream out = output(socket);
+            ReplicationProtocol.authenticateLeader(SECRET.getBytes("UTF-8"), in, out);
+            out.writeByte(ReplicationProtocol.WRITE);
+            long lastSeq = -1;
+            for (int id = 1; id <= 3; id++) {
+                out.writeByte(ReplicationProtocol.DELETE);
+                out.writeInt(id);
+                out.flush();
+                assertEquals(ReplicationProtocol.OK, in.readByte());
+                assertEquals(leader.getStatus().get("epoch"), in.readLong());
+                long seq = in.readLong();
+                assertTrue(seq > lastSeq);
+                lastSeq = seq;
+            }
+            out.writeByte(ReplicationProtocol.DELETE);
+            out.writeInt(1);
+            out.flush();
+            assertEquals(ReplicationProtocol.NOT_FOUND, in.readByte());
+            in.readLong();
+            assertEquals(lastSeq, in.readLong());
+        }
+        assertNull(dao.getProductById(1));
+        assertNull(dao.getProductById(3));
+        assertEquals(2, dao.getProductCount());
+    }
+
+    @Test
+    public void resetEntryCarriesTheNewRows() throws Exception {
+        ReplicationLog log = new ReplicationLog(10);
+        dao.setMutationListener(log);
+        dao.resetData();
+        List<Mutation> entries = log.entriesAfter(0, 0, 10);
+        assertEquals(1, entries.size());
+        assertEquals(Mutation.RESET, entries.get(0).getOp());
+
+        // Round trip through the wire format
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        entries.get(0).write(new DataOutputStream(bytes));
+        Mutation read = Mutation.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(1, read.getSeq());
+        assertEquals(5, read.getProducts().size());
+        for (Product product : read.getProducts()) {
+            Product stored = dao.getProductById(product.getId());
+            assertEquals(stored.getName(), product.getName());
+            assertEquals(stored.getStock(), product.getStock());
+        }
+    }
+
+    @Test
+    public void writeWithoutHandshakeIsDropped() throws IOException {
+        try (Socket socket = connect()) {
+            DataInputStream in = input(socket);
+            DataOutputStream out = output(socket);
+            // The pre-handshake framing: magic, kind, op
+            out.writeInt(ReplicationProtocol.MAGIC);
+            out.writeByte(ReplicationProtocol.WRITE);
+            out.writeByte(ReplicationProtocol.ADD);
+            BinaryHelper.writeRecord(new Product(0, "Injected", "Tools", 1.0, 1), out);
+            out.flush();
+            socket.shutdownOutput();
+            readUntilClosed(in);
+        }
+        assertEquals(5, dao.getProductCount());
+        assertNotNull(dao.getProductById(1));
+    }
+
+    @Test
+    public void wrongSecretIsRejectedBothWays() throws IOException {
+        try (Socket socket = connect()) {
+            ReplicationProtocol.authenticateLeader("wrong".getBytes("UTF-8"), input(socket), output(socket));
+            fail("leader proof should not verify with a different secret");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("authentication"));
+        }
+        assertEquals(5, dao.getProductCount());
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(address.getAddress(), address.getPort());
+        socket.setSoTimeout(10000);
+        return socket;
+    }
+
+    private static DataInputStream input(Socket socket) throws IOException {
+        return new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    private static DataOutputStream output(Socket socket) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    // The leader answers a bogus handshake with its nonce and proof, then hangs up
+    private static void readUntilClosed(DataInputStream in) throws IOException {
+        try {
+            while (true) {
+                in.readByte();
+            }
+        } catch (EOFException e) {
+            // closed by the leader
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.nationwide.legacy.util;
+
+import com.nationwide.legacy.dao.ProductDAO;
+import com.nationwide.legacy.model.Product;
+import com.nationwide.legacy.model.ProductView;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Conformance of the binary format with format=json: a product stream
+ * decoded by readProducts() must render to the same JSON as the products
+ * that were encoded
+ */
+public class BinaryHelperTest {
+
+    @Test
+    public void seedCatalogMatchesJson() throws Exception {
+        assertConforms(ProductDAO.getInstance().getAllProducts());
+    }
+
+    @Test
+    public void edgeCasesMatchJson() throws Exception {
+        assertConforms(Arrays.asList(
+                new Product(Integer.MAX_VALUE, "Widget \"Pro\"", "Tools", 0.1 + 0.2, 0),
+                new Product(-1, "Café ☕ 😀", "Küche", -0.0, -5),
+                new Product(0, "", "", Double.MAX_VALUE, Integer.MIN_VALUE),
+                new Product(7, null, null, Double.MIN_VALUE, 1),
+                new Product(8, "tab\tnew\nline\\", "a/b", 1e-300, 42)));
+    }
+
+    @Test
+    public void emptyStreamMatchesJson() throws Exception {
+        assertConforms(Collections.<Product>emptyList());
+    }
+
+    @Test
+    public void singleRecordMatchesProductJson() throws Exception {
+        Product product = new Product(3, "Desk Lamp", "Home Office", 24.5, 12);
+        List<Product> decoded = roundTrip(Collections.singletonList(product));
+        assertEquals(1, decoded.size());
+        assertEquals(JsonHelper.productToJson(product), JsonHelper.productToJson(decoded.get(0)));
+    }
+
+    @Test
+    public void largeStreamMatchesJson() throws Exception {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            products.add(new Product(i, "Product " + i, "Category " + (i % 37), i / 7.0, i % 500));
+        }
+        assertConforms(products);
+    }
+
+    @Test
+    public void viewEncodesLikeTheProduct() throws Exception {
+        ProductDAO dao = ProductDAO.getInstance();
+        ProductView view = new ProductView();
+        assertTrue(dao.getProductById(1, view));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryHelper.writeProduct(view, out);
+        assertArrayEquals(encode(Collections.singletonList(dao.getProductById(1))), out.toByteArray());
+        assertEquals(JsonHelper.productToJson(dao.getProductById(1)), JsonHelper.productToJson(view));
+    }
+
+    @Test
+    public void rejectsBadMagic() {
+        try {
+            BinaryHelper.readProducts(new ByteArrayInputStream(new byte[] {0, 0, 0, 1, 0, 0, 0, 0}));
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("bad magic"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedStream() throws Exception {
+        byte[] bytes = encode(Collections.singletonList(new Product(1, "Widget", "Tools", 1.0, 1)));
+        BinaryHelper.readProducts(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)));
+    }
+
+    @Test
+    public void forgedCountFailsWithoutPresizing() {
+        byte[] header = {0x50, 0x52, 0x4F, 0x44, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+        try {
+            BinaryHelper.readProducts(new ByteArrayInputStream(header));
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // ran out of records; an OutOfMemoryError would have escaped
+        }
+    }
+
+    @Test
+    public void rejectsOversizedString() throws Exception {
+        byte[] bytes = encode(Collections.singletonList(new Product(1, "Widget", "Tools", 1.0, 1)));
+        // The name length follows magic, count, id, price and stock
+        int lengthOffset = 4 + 4 + 4 + 8 + 4;
+        bytes[lengthOffset] = 0x7F;
+        try {
+            BinaryHelper.readProducts(new ByteArrayInputStream(bytes));
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Invalid string length"));
+        }
+    }
+
+    private static void assertConforms(List<Product> products) throws Exception {
+        List<Product> decoded = roundTrip(products);
+        assertEquals(products.size(), decoded.size());
+        assertEquals(JsonHelper.productsToJson(products), JsonHelper.productsToJson(decoded));
+    }
+
+    private static List<Product> roundTrip(List<Product> products) throws IOException {
+        return BinaryHelper.readProducts(new ByteArrayInputStream(encode(products)));
+    }
+
+    private static byte[] encode(List<Product> products) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryHelper.writeProducts(products, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,39 @@
+package com.nationwide.legacy.web;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionControlFilterTest {
+
+    @Test
+    public void readsActionPathsWithoutFetchingTheDtd() throws Exception {
+        String config = "<?xml version=\"1.0\"?>\n"
+                + "<!DOCTYPE struts-config PUBLIC \"-//Apache Software Foundation//DTD Struts Configuration 1.3//EN\"\n"
+                + "  \"http://invalid.example/struts-config_1_3.dtd\">\n"
+                + "<struts-config><action-mappings>\n"
+                + "  <action path=\"/listProducts\" type=\"A\"><forward name=\"success\" path=\"/list.jsp\"/></action>\n"
+                + "  <action path=\"/ready\" type=\"B\"/>\n"
+                + "</action-mappings></struts-config>";
+        Set<String> paths = AdmissionControlFilter.actionPaths(
+                new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(new HashSet<>(Arrays.asList("/listProducts", "/ready")), paths);
+    }
+
+    @Test
+    public void shippedStrutsConfigMapsTheLimitedActions() throws Exception {
+        try (InputStream in = new FileInputStream("src/main/webapp/WEB-INF/struts-config.xml")) {
+            Set<String> paths = AdmissionControlFilter.actionPaths(in);
+            assertTrue(paths.containsAll(Arrays.asList("/listProducts", "/searchProducts", "/filterByCategory")));
+        }
+    }
+}